@@ -3,6 +3,8 @@ package com.github.xuse.jmxspy;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 
+import com.github.xuse.jmxspy.util.MappedLineReader;
+
 public interface ExtensionContext {
 	/**
 	 * 获得属性
@@ -31,6 +33,21 @@ public interface ExtensionContext {
 	BufferedReader getReader(String fileName);
 	
 	BufferedWriter getWriter(String fileName);
+
+	/**
+	 * 得到基于内存映射的按行读取器，适合读取较大的文件
+	 * @param fileName
+	 * @return
+	 */
+	MappedLineReader getLineReader(String fileName);
+
+	/**
+	 * 得到异步写入的Writer，由后台线程写入磁盘。flush时等待数据写入文件。
+	 * @param fileName
+	 * @param bufferSize 每个缓冲区的大小
+	 * @return
+	 */
+	BufferedWriter getAsyncWriter(String fileName, int bufferSize);
 	
 	/**
 	 * 输出错误
@@ -18,7 +18,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 
+import com.github.xuse.jmxspy.util.AsyncFileOutputStream;
 import com.github.xuse.jmxspy.util.IOUtils;
+import com.github.xuse.jmxspy.util.MappedLineReader;
 import com.github.xuse.jmxspy.util.StringUtils;
 import com.github.xuse.jmxspy.util.args.Args;
 
@@ -231,6 +233,25 @@ public class SQLConsole implements ExtensionContext {
 
 	@Override
 	public BufferedReader getReader(String fileName) {
+		File file = getInputFile(fileName);
+		try {
+			return new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public MappedLineReader getLineReader(String fileName) {
+		File file = getInputFile(fileName);
+		try {
+			return new MappedLineReader(file);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private File getInputFile(String fileName) {
 		File file = new File(root, fileName);
 		if (!fileName.endsWith(".txt") && !file.exists()) {
 			file = new File(root, fileName + ".txt");
@@ -238,19 +259,26 @@ public class SQLConsole implements ExtensionContext {
 		if (!file.isFile()) {
 			throw new IllegalArgumentException(file.getAbsolutePath() + "不存在");
 		}
+		return file;
+	}
+
+	@Override
+	public BufferedWriter getWriter(String fileName) {
+		File file = new File(root, fileName);
+		file = IOUtils.escapeExistFile(file);
 		try {
-			return new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
 		} catch (IOException e) {
 			throw new IllegalStateException(e);
 		}
 	}
 
 	@Override
-	public BufferedWriter getWriter(String fileName) {
+	public BufferedWriter getAsyncWriter(String fileName, int bufferSize) {
 		File file = new File(root, fileName);
 		file = IOUtils.escapeExistFile(file);
 		try {
-			return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			return new BufferedWriter(new OutputStreamWriter(new AsyncFileOutputStream(file, false, bufferSize, AsyncFileOutputStream.DEFAULT_BUFFER_COUNT), "UTF-8"));
 		} catch (IOException e) {
 			throw new IllegalStateException(e);
 		}
@@ -0,0 +1,54 @@
+package com.github.xuse.jmxspy.command;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.xuse.jmxspy.AbstractCommand;
+import com.github.xuse.jmxspy.util.args.Args;
+import com.github.xuse.slf4j.impl.SimpleLogger;
+
+/**
+ * 运行时查看和修改日志级别
+ * <ul>
+ * <li>loglevel 列出所有配置的级别</li>
+ * <li>loglevel a.b.c 查看a.b.c当前生效的级别</li>
+ * <li>loglevel a.b.c debug 修改a.b.c及其下级日志的级别，ROOT表示默认级别</li>
+ * <li>loglevel a.b.c -reset 撤销运行时的修改，恢复配置文件中的级别</li>
+ * </ul>
+ *
+ * @author Joey
+ */
+public class LogLevelCommand extends AbstractCommand {
+
+	@Override
+	public void run(Args args) throws Exception {
+		String name = args.get(0, null);
+		String level = args.get(1, null);
+		if (name == null) {
+			for (Map.Entry<String, String> e : SimpleLogger.getLogLevels().entrySet()) {
+				System.out.println(e.getKey() + "=" + e.getValue());
+			}
+		} else if (args.containsAny("reset")) {
+			int count = SimpleLogger.resetLogLevel(name);
+			System.out.println(name + "已恢复为" + SimpleLogger.getLogLevel(name) + "，影响" + count + "个日志");
+		} else if (level == null) {
+			System.out.println(name + "=" + SimpleLogger.getLogLevel(name));
+		} else {
+			int count = SimpleLogger.setLogLevel(name, level);
+			System.out.println(name + "已设置为" + level + "，影响" + count + "个日志");
+		}
+	}
+
+	@Override
+	public Map<String, String> getParamDesc() {
+		Map<String, String> m = new HashMap<String, String>();
+		m.put("", "日志名称(ROOT为默认级别) 级别(trace/debug/info/warn/error/off)");
+		m.put("-reset", "撤销运行时修改的级别");
+		return m;
+	}
+
+	@Override
+	public String getName() {
+		return "日志级别";
+	}
+}
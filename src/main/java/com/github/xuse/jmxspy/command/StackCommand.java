@@ -29,6 +29,7 @@ import com.github.xuse.jmxspy.util.StringUtils;
 import com.github.xuse.jmxspy.util.Threads;
 import com.github.xuse.jmxspy.util.ZipUtils;
 import com.github.xuse.jmxspy.util.args.Args;
+import com.github.xuse.jmxspy.util.string.GlobFilter;
 import com.sun.management.ThreadMXBean;
 
 public class StackCommand extends AbstractCommand{
@@ -42,6 +43,10 @@ public class StackCommand extends AbstractCommand{
 
 	private static final int MAX_COUNT = 8;
 	private static final int interval = 3;
+	/**
+	 * 按线程名过滤，include和exclude规则都可以有很多个
+	 */
+	private GlobFilter threadFilter;
 
 
 	@Override
@@ -51,6 +56,9 @@ public class StackCommand extends AbstractCommand{
 		int count = args.getInt("count").abbrev().defaultIs(2).get();
 		String user = args.get("user").abbrev().get();
 		String password = args.get("password").abbrev().get();
+		String include = args.get("thread").abbrev().get();
+		String exclude = args.get("exclude").abbrev().get();
+		threadFilter = new GlobFilter(split(include), split(exclude));
 //		boolean zip=args.containsAny("z","zip");
 		
 		JMXConnector connector = getConnection(url, user, password);
@@ -92,6 +100,8 @@ public class StackCommand extends AbstractCommand{
 			writer.write("\n\n");
 			int idx = 0;
 			for (ThreadInfo t : infos) {
+				if (!threadFilter.accept(t.getThreadName()))
+					continue;
 				writer.write(format(t, idx++));
 			}
 		} finally {
@@ -205,6 +215,10 @@ public class StackCommand extends AbstractCommand{
 		return connector;
 	}
 
+	private static String[] split(String globs) {
+		return StringUtils.isEmpty(globs) ? null : StringUtils.split(globs, ',');
+	}
+
 	private void close(BufferedWriter writer) {
 		try {
 			writer.close();
@@ -221,6 +235,8 @@ public class StackCommand extends AbstractCommand{
 		m.put("-count", "抓取线程次数");
 		m.put("-user", "用户名");
 		m.put("-password", "密码");
+		m.put("-thread", "只输出名称匹配的线程，支持*?通配符，多个用逗号分隔");
+		m.put("-exclude", "不输出名称匹配的线程，支持*?通配符，多个用逗号分隔");
 		return m;
 	}
 
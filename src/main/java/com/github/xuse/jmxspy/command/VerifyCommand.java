@@ -0,0 +1,51 @@
+package com.github.xuse.jmxspy.command;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.xuse.jmxspy.AbstractCommand;
+import com.github.xuse.jmxspy.util.args.Args;
+import com.github.xuse.jmxspy.util.zip.VolumnManifest;
+
+/**
+ * 根据分卷清单校验分卷文件
+ */
+public class VerifyCommand extends AbstractCommand {
+
+	@Override
+	public void run(Args args) throws Exception {
+		String fileName = args.get(0).argName("manifest or volumn file").assertNotEmpy().get();
+		int threads = args.getInt("threads").abbrev().defaultIs(0).get();
+
+		File file = new File(fileName);
+		if (!fileName.endsWith(VolumnManifest.SUFFIX)) {
+			file = VolumnManifest.getManifestFile(file);
+		}
+		if (!file.isFile()) {
+			context.error("清单文件" + file.getAbsolutePath() + "不存在");
+			return;
+		}
+		long start = System.currentTimeMillis();
+		VolumnManifest manifest = VolumnManifest.read(file);
+		List<String> errors = manifest.verify(file.getAbsoluteFile().getParentFile(), threads);
+		for (String error : errors) {
+			context.error(error);
+		}
+		System.out.println("校验" + manifest.size() + "个分卷，失败" + errors.size() + "个，耗时" + (System.currentTimeMillis() - start) + "ms");
+	}
+
+	@Override
+	public Map<String, String> getParamDesc() {
+		Map<String, String> m = new HashMap<String, String>();
+		m.put("", "清单文件或第一卷文件");
+		m.put("-threads", "线程数，默认为CPU核数");
+		return m;
+	}
+
+	@Override
+	public String getName() {
+		return "分卷校验";
+	}
+}
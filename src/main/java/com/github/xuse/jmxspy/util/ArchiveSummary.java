@@ -19,15 +19,15 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.github.xuse.jmxspy.util.collection.LongList;
+import com.github.xuse.jmxspy.util.collection.CompressedLongSequence;
 
 public class ArchiveSummary {
 	private long unpSize = 0;
 	private long packedSize = 0;
 	private int itemCount = 0;
 	private List<String> names = new ArrayList<String>();
-	private LongList itemSize = new LongList();
-	private LongList itemUnpSize = new LongList();
+	private CompressedLongSequence itemSize = new CompressedLongSequence();
+	private CompressedLongSequence itemUnpSize = new CompressedLongSequence();
 
 	public long getUnpSize() {
 		return unpSize;
@@ -65,7 +65,7 @@ public class ArchiveSummary {
 	public void addItem(String name, long psize, long unpSize) {
 		itemCount++;
 		packedSize += psize;
-		unpSize += unpSize;
+		this.unpSize += unpSize;
 		names.add(name);
 		itemSize.add(psize);
 		itemUnpSize.add(unpSize);
@@ -33,7 +33,9 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import com.github.xuse.jmxspy.util.collection.IntList;
+import com.github.xuse.jmxspy.util.collection.IntSet;
 import com.github.xuse.jmxspy.util.collection.LongList;
+import com.github.xuse.jmxspy.util.collection.LongSet;
 
 /**
  * 数组工具
@@ -273,12 +275,10 @@ public class ArrayUtils{
 	 * 合并数组，消除重复
 	 */
 	public static int[] merge(int[] array1, int[] array2) {
-		IntList list = new IntList();
-		for (int str : array1) {
-			list.add(str);
-		}
+		IntList list = new IntList(array1);
+		IntSet set = new IntSet(array1, array1.length);
 		for (int str : array2) {
-			if (!list.contains(str)) {
+			if (set.add(str)) {
 				list.add(str);
 			}
 		}
@@ -290,13 +290,10 @@ public class ArrayUtils{
 	 * 合并数组，去掉重复
 	 */
 	public static long[] merge(long[] array1, long[] array2) {
-		LongList list = new LongList();
-		for (long str : array1) {
-			list.add(str);
-		}
-
+		LongList list = new LongList(array1);
+		LongSet set = new LongSet(array1, array1.length);
 		for (long str : array2) {
-			if (!list.contains(str)) {
+			if (set.add(str)) {
 				list.add(str);
 			}
 		}
@@ -304,16 +301,17 @@ public class ArrayUtils{
 	}
 
 	/**
-	 * 去掉重复数据
+	 * 去掉重复数据，保持原有顺序
 	 */
 	public static int[] removeDups(int[] array) {
-		IntList list = new IntList(array.length);
-		for (int str : array) {
-			if (!list.contains(str))
-				list.add(str);
-		}
-		return list.toArrayUnsafe();
-
+		IntSet set = new IntSet(array.length);
+		int[] result = new int[array.length];
+		int n = 0;
+		for (int value : array) {
+			if (set.add(value))
+				result[n++] = value;
+		}
+		return n == result.length ? result : Arrays.copyOf(result, n);
 	}
 
 	/**
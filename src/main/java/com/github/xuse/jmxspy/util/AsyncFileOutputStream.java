@@ -0,0 +1,212 @@
+package com.github.xuse.jmxspy.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步写文件的输出流。
+ * <p>
+ * 调用者写入的数据先放入缓冲区，缓冲区写满后交给专门的写线程通过FileChannel写入磁盘，调用者换用下一个空闲的缓冲区继续写入。
+ * 缓冲区个数固定，全部在写线程中排队时调用者才会等待，因此磁盘的抖动不会直接阻塞调用者。
+ * {@link #flush()}会等待已写入的数据全部落到文件中；写线程出现的错误(包括写线程因异常或中断而退出)在下一次写入、flush或close时抛出。
+ * 本类不是线程安全的，只能由一个线程写入。
+ *
+ * @author Joey
+ */
+public class AsyncFileOutputStream extends OutputStream {
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+	public static final int DEFAULT_BUFFER_COUNT = 4;
+
+	private static final ByteBuffer EOF = ByteBuffer.allocate(0);
+
+	private final FileChannel channel;
+	private final BlockingQueue<ByteBuffer> filled;
+	private final BlockingQueue<ByteBuffer> free;
+	private final Thread writer;
+	private final Object flushLock = new Object();
+	private final byte[] oneBuf = new byte[1];
+
+	private ByteBuffer current;
+	private long submitted;
+	private volatile long written;
+	private volatile IOException error;
+	private boolean closed;
+
+	public AsyncFileOutputStream(File file) throws IOException {
+		this(file, false, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param file        文件
+	 * @param append      是否追加到文件末尾
+	 * @param bufferSize  每个缓冲区的大小
+	 * @param bufferCount 缓冲区个数，至少为2
+	 * @throws IOException
+	 */
+	public AsyncFileOutputStream(File file, boolean append, int bufferSize, int bufferCount) throws IOException {
+		Assert.isTrue(bufferSize > 0, "buffer size must be positive.");
+		Assert.isTrue(bufferCount >= 2, "buffer count must be at least 2.");
+		this.channel = append ? FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+				: FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.filled = new ArrayBlockingQueue<ByteBuffer>(bufferCount + 1);
+		this.free = new ArrayBlockingQueue<ByteBuffer>(bufferCount);
+		for (int i = 1; i < bufferCount; i++) {
+			free.add(ByteBuffer.allocateDirect(bufferSize));
+		}
+		this.current = ByteBuffer.allocateDirect(bufferSize);
+		this.writer = new Thread(new Runnable() {
+			public void run() {
+				writeLoop();
+			}
+		}, "async-writer-" + file.getName());
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		oneBuf[0] = (byte) b;
+		write(oneBuf, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (!current.hasRemaining()) {
+				submit();
+			}
+			int n = Math.min(len, current.remaining());
+			current.put(b, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * 将当前缓冲区交给写线程，并等待所有数据写入文件
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if (current.position() > 0) {
+			submit();
+		}
+		synchronized (flushLock) {
+			while (written < submitted && error == null) {
+				try {
+					flushLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+			}
+		}
+		checkError();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		try {
+			flush();
+		} finally {
+			closed = true;
+			filled.offer(EOF);
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			channel.close();
+		}
+	}
+
+	/**
+	 * @return 已经写入文件的字节数
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+	private void submit() throws IOException {
+		checkError();
+		current.flip();
+		submitted += current.remaining();
+		try {
+			filled.put(current);
+			// 写线程意外退出后不会再归还缓冲区，不能无限等待
+			ByteBuffer buf;
+			while ((buf = free.poll(100, TimeUnit.MILLISECONDS)) == null) {
+				checkError();
+			}
+			current = buf;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	private void writeLoop() {
+		try {
+			while (true) {
+				ByteBuffer buf = filled.take();
+				if (buf == EOF)
+					return;
+				int len = buf.remaining();
+				try {
+					if (error == null) {
+						while (buf.hasRemaining())
+							channel.write(buf);
+					}
+				} catch (IOException e) {
+					error = e;
+				}
+				buf.clear();
+				free.put(buf);
+				synchronized (flushLock) {
+					written += len;
+					flushLock.notifyAll();
+				}
+			}
+		} catch (InterruptedException e) {
+			// 线程被中断，退出
+			fail(new InterruptedIOException("async writer thread interrupted"));
+		} catch (Throwable t) {
+			fail(new IOException("async writer thread failed", t));
+		} finally {
+			// 无论怎样退出都唤醒flush()，由它检查error
+			synchronized (flushLock) {
+				flushLock.notifyAll();
+			}
+		}
+	}
+
+	private void fail(IOException e) {
+		if (error == null)
+			error = e;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+		checkError();
+	}
+
+	private void checkError() throws IOException {
+		IOException e = error;
+		if (e != null)
+			throw e;
+	}
+}
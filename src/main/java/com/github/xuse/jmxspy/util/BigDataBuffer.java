@@ -16,26 +16,42 @@
 package com.github.xuse.jmxspy.util;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * 用于缓存数据的对象。当数据小于2M时，自动使用内存中的空间
- * 大于2M时，使用文件
+ * 用于缓存数据的对象。当数据小于阈值(默认2M)时，使用内存中的空间，大于阈值时，使用文件
+ * <ul>
+ * <li>内存中的数据分块存放，第一块只有4K，之后按需成倍增长，小数据不会占用整个阈值大小的内存。可选使用堆外内存。</li>
+ * <li>超过阈值后通过FileChannel写入临时文件，读取时使用只读的内存映射，不经过FileInputStream。</li>
+ * <li>{@link #clear()}之后已分配的内存块保留，可以反复使用。</li>
+ * <li>{@link #transferTo(WritableByteChannel)}直接写出内存块或由内核拷贝文件，不经过中间的byte[]。
+ * {@link IOUtils#copy(InputStream, OutputStream, boolean)}会识别{@link #getAsStream()}返回的流并使用同样的方式。</li>
+ * </ul>
  * @author Administrator
  *
  */
 public class BigDataBuffer extends OutputStream {
 	public static final int memcacheLength=2*1024*1024; //内存缓存数据最大2M
 	
+	private static final int INITIAL_CHUNK_SIZE=4*1024;	//第一个内存块的大小
+	private static final int MAX_CHUNK_SIZE=1024*1024;		//单个内存块的最大大小
+	private static final int SPILL_BUFFER_SIZE=64*1024;	//写文件时的缓冲区大小
+	private static final long MAP_SEGMENT_SIZE=1L<<30;		//读取文件时每段内存映射的大小
+	
 	private static final int RECEIVE_MEM=-1;      //正在收取数据，使用缓存
 	private static final int RECEIVE_FILE=0;		//正在收取数据，使用文件
 	private static final int OPEN_MEM=-2; 	//已就绪可放出数据,使用缓存
@@ -45,24 +61,59 @@ public class BigDataBuffer extends OutputStream {
 	private int state;	//当前状态，为上述之一
 	long length;//当前长度
 	
-	ByteBuffer memCache;
+	private final int threshold;	//超过此长度时使用文件
+	private final boolean direct;	//是否使用堆外内存
+	
+	private ByteBuffer[] chunks=new ByteBuffer[8];	//内存块，clear后保留
+	private int chunkCount;		//已分配的内存块数
+	private int current;		//正在写入的内存块
+	private long capacity;		//已分配的内存块总大小
+	private boolean wrapped;	//chunks[0]是wrap(byte[])传入的数组，属于调用者，clear后不能重复使用
+	
 	private File file;
-	private FileOutputStream out;//存储位置：文件，仅当RECEIVE_FILE时有效
-	private InputStream output;	  //获取方式：流：仅当OPEN_FILE时有效
+	private FileChannel channel;	//存储位置：文件，仅当RECEIVE_FILE时有效
+	private ByteBuffer spillBuffer;	//写文件时的缓冲区
+	private ByteBuffer[] views;		//就绪后的数据视图：内存块或文件的内存映射
+	private InputStream output;	  //获取方式：流
 	
 	
-	private Logger logger=LoggerFactory.getLogger(BigDataBuffer.class);
+	private static final Logger logger=LoggerFactory.getLogger(BigDataBuffer.class);
 	/**
 	 * 构造
 	 */
 	public BigDataBuffer(){
+		this(memcacheLength,false);
+	}
+	
+	/**
+	 * 构造
+	 * @param threshold 内存中缓存的最大字节数，超过后使用文件
+	 */
+	public BigDataBuffer(int threshold){
+		this(threshold,false);
+	}
+	
+	/**
+	 * 构造
+	 * @param threshold 内存中缓存的最大字节数，超过后使用文件
+	 * @param direct 是否使用堆外内存
+	 */
+	public BigDataBuffer(int threshold,boolean direct){
+		Assert.isTrue(threshold>=0, "threshold must not be negative.");
+		this.threshold=threshold;
+		this.direct=direct;
 		state=RECEIVE_MEM;
-		memCache=ByteBuffer.allocate(memcacheLength);
 	}
 	
 	private BigDataBuffer(byte[] data){
-		state=RECEIVE_MEM;
-		memCache=ByteBuffer.wrap(data);
+		this(Math.max(memcacheLength, data.length),false);
+		ByteBuffer chunk=ByteBuffer.wrap(data);
+		chunk.position(data.length);
+		chunks[0]=chunk;
+		chunkCount=1;
+		capacity=data.length;
+		length=data.length;
+		wrapped=true;
 	}
 	
 	/**
@@ -71,7 +122,22 @@ public class BigDataBuffer extends OutputStream {
 	 * @throws IOException
 	 */
 	public void write(ByteBuffer clientBuffer) throws IOException {
-		write(clientBuffer.array(),0,clientBuffer.limit());
+		if(clientBuffer.hasArray()){
+			write(clientBuffer.array(),clientBuffer.arrayOffset(),clientBuffer.limit());
+			return;
+		}
+		ByteBuffer src=clientBuffer.duplicate();
+		src.position(0);
+		byte[] buf=BufferPool.DEFAULT.borrow();
+		try{
+			while(src.hasRemaining()){
+				int n=Math.min(buf.length, src.remaining());
+				src.get(buf,0,n);
+				write(buf,0,n);
+			}
+		}finally{
+			BufferPool.DEFAULT.release(buf);
+		}
 	}
 	
 	/**
@@ -85,8 +151,8 @@ public class BigDataBuffer extends OutputStream {
 	
 	public void write(int b) throws IOException {
 		if(state==RECEIVE_MEM){
-			if(length+1<=memCache.capacity()){
-				memCache.put((byte)b);
+			if(length+1<=threshold){
+				writableChunk().put((byte)b);
 				length++;
 				return;
 			}else{
@@ -96,7 +162,10 @@ public class BigDataBuffer extends OutputStream {
 		if(state!=RECEIVE_FILE){
 			throw new IllegalStateException("The BigDataBuffer do not allow write any data, state="+state);
 		}
-		out.write(b);
+		if(!spillBuffer.hasRemaining()){
+			flushSpillBuffer();
+		}
+		spillBuffer.put((byte)b);
 		length++;
 	}
 	
@@ -107,9 +176,15 @@ public class BigDataBuffer extends OutputStream {
 	 */
 	public void write(byte[] buffer,int off,int len) throws IOException{
 		if(state==RECEIVE_MEM){
-			if(length+len<=memCache.capacity()){
-				memCache.put(buffer, off, len);
-				length+=len;
+			if(length+len<=threshold){
+				while(len>0){
+					ByteBuffer chunk=writableChunk();
+					int n=Math.min(len, chunk.remaining());
+					chunk.put(buffer, off, n);
+					off+=n;
+					len-=n;
+					length+=n;
+				}
 				return;
 			}else{
 				createFile();//将内存缓存写入磁盘
@@ -118,7 +193,16 @@ public class BigDataBuffer extends OutputStream {
 		if(state!=RECEIVE_FILE){
 			throw new IllegalStateException("The BigDataBuffer do not allow write any data, state="+state);
 		}
-		out.write(buffer,off,len);
+		if(len<=spillBuffer.remaining()){
+			spillBuffer.put(buffer, off, len);
+		}else{
+			flushSpillBuffer();
+			if(len<spillBuffer.capacity()){
+				spillBuffer.put(buffer, off, len);
+			}else{
+				writeFully(channel, ByteBuffer.wrap(buffer, off, len));
+			}
+		}
 		length+=len;
 	}
 	
@@ -127,11 +211,23 @@ public class BigDataBuffer extends OutputStream {
 	 */
 	public void flip(){
 		if(state==RECEIVE_MEM){
-			memCache.flip();
+			views=new ByteBuffer[chunkCount==0?0:current+1];
+			for(int i=0;i<views.length;i++){
+				ByteBuffer view=chunks[i].duplicate();
+				view.flip();
+				views[i]=view;
+			}
 			state=OPEN_MEM;
 		}
 		if(state==RECEIVE_FILE){
-			IOUtils.closeQuietly(out);
+			try{
+				flushSpillBuffer();
+			}catch(IOException e){
+				throw new IllegalStateException(e);
+			}finally{
+				IOUtils.closeQuietly(channel);
+				channel=null;
+			}
 			state=OPEN_FILE;
 		}
 	}
@@ -141,6 +237,12 @@ public class BigDataBuffer extends OutputStream {
 		protected InnerInputStream(InputStream in) {
 			super(in);
 		}
+		/*
+		 * 将剩余的数据直接写出
+		 */
+		long writeTo(OutputStream out) throws IOException {
+			return ((ChunkedInputStream)in).writeTo(out);
+		}
 		@Override
 		public void close() throws IOException {
 			super.close();
@@ -154,6 +256,118 @@ public class BigDataBuffer extends OutputStream {
 		}
 	}
 	
+	/*
+	 * 依次读取多个ByteBuffer的流
+	 */
+	static class ChunkedInputStream extends InputStream implements ReadableByteChannel{
+		private final ByteBuffer[] buffers;
+		private int index;
+		private boolean closed;
+		
+		ChunkedInputStream(ByteBuffer[] buffers){
+			this.buffers=buffers;
+		}
+		
+		private ByteBuffer currentBuffer(){
+			while(index<buffers.length){
+				ByteBuffer bb=buffers[index];
+				if(bb.hasRemaining())
+					return bb;
+				index++;
+			}
+			return null;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			ByteBuffer bb=currentBuffer();
+			return bb==null?-1:bb.get()&0xff;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len==0)
+				return 0;
+			ByteBuffer bb=currentBuffer();
+			if(bb==null)
+				return -1;
+			int n=Math.min(len, bb.remaining());
+			bb.get(b, off, n);
+			return n;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped=0;
+			ByteBuffer bb;
+			while(skipped<n && (bb=currentBuffer())!=null){
+				int s=(int)Math.min(n-skipped, bb.remaining());
+				bb.position(bb.position()+s);
+				skipped+=s;
+			}
+			return skipped;
+		}
+		
+		@Override
+		public int available() throws IOException {
+			long n=0;
+			for(int i=index;i<buffers.length;i++){
+				n+=buffers[i].remaining();
+			}
+			return (int)Math.min(Integer.MAX_VALUE, n);
+		}
+		
+		public int read(ByteBuffer dst) throws IOException {
+			ByteBuffer bb=currentBuffer();
+			if(bb==null)
+				return -1;
+			int total=0;
+			while(bb!=null && dst.hasRemaining()){
+				int n=Math.min(dst.remaining(), bb.remaining());
+				ByteBuffer src=bb.duplicate();
+				src.limit(src.position()+n);
+				dst.put(src);
+				bb.position(bb.position()+n);
+				total+=n;
+				bb=currentBuffer();
+			}
+			return total;
+		}
+		
+		/*
+		 * 堆内存直接写出数组，文件输出流使用其通道写出，其余写入通道适配器
+		 */
+		long writeTo(OutputStream out) throws IOException {
+			long total=0;
+			WritableByteChannel channel=null;
+			ByteBuffer bb;
+			while((bb=currentBuffer())!=null){
+				int n=bb.remaining();
+				if(bb.hasArray()){
+					out.write(bb.array(), bb.arrayOffset()+bb.position(), n);
+					bb.position(bb.limit());
+				}else{
+					if(channel==null){
+						out.flush();
+						channel=out instanceof FileOutputStream?((FileOutputStream)out).getChannel():Channels.newChannel(out);
+					}
+					writeFully(channel, bb);
+				}
+				total+=n;
+			}
+			return total;
+		}
+		
+		public boolean isOpen() {
+			return !closed;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			closed=true;
+		}
+	}
+	
 	
 	/**
 	 * 写入完成，开始获取内容
@@ -164,49 +378,200 @@ public class BigDataBuffer extends OutputStream {
 		flip();
 		if(state==OPEN_MEM){
 			if(output==null){
-				memCache.rewind();
-				output=new InnerInputStream(new ByteBufferInputStream(memCache));
+				output=new InnerInputStream(new ChunkedInputStream(views));
 			}
 			return output;
 		}
 		if(state==OPEN_FILE){
-			if(output==null)output=new InnerInputStream(new FileInputStream(file));
+			if(output==null){
+				if(views==null)views=mapFile();
+				output=new InnerInputStream(new ChunkedInputStream(views));
+			}
 			return output;	
 		}
 		throw new IllegalStateException("Current state is "+ state);
 	}
 	
 	/**
-	 * 清空对象，可以进行下一次收取数据操作
+	 * 写入完成，以通道的方式获取内容。每次调用返回一个新的通道，从头开始读取，使用完毕后由调用者关闭。
+	 * 数据在文件中时返回文件的FileChannel。
+	 * @return
+	 * @throws IOException
 	 */
-	public void clear(){
-		if(state==RECEIVE_MEM || state==OPEN_MEM){
-			memCache.clear();
-			return;
+	public ReadableByteChannel getAsChannel() throws IOException{
+		flip();
+		if(state==OPEN_MEM){
+			return new ChunkedInputStream(duplicateViews());
 		}
-		if(state==RECEIVE_FILE){
-			IOUtils.closeQuietly(out);
-			state=OPEN_FILE;
+		if(state==OPEN_FILE){
+			return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		}
+		throw new IllegalStateException("Current state is "+ state);
+	}
+	
+	/**
+	 * 写入完成，将全部内容写入到通道。内存中的数据直接写出，文件中的数据使用{@link FileChannel#transferTo}由内核拷贝。
+	 * 不影响{@link #getAsStream()}的读取位置。
+	 * @param target 目标通道
+	 * @return 写出的字节数
+	 * @throws IOException
+	 */
+	public long transferTo(WritableByteChannel target) throws IOException{
+		flip();
+		if(state==OPEN_MEM){
+			long total=0;
+			for(ByteBuffer view:duplicateViews()){
+				total+=view.remaining();
+				writeFully(target, view);
+			}
+			return total;
 		}
 		if(state==OPEN_FILE){
-			if(file.exists())file.delete();
+			FileChannel in=FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try{
+				long size=in.size();
+				long pos=0;
+				ByteBuffer buf=null;
+				while(pos<size){
+					long n=in.transferTo(pos, size-pos, target);
+					if(n<=0){
+						//目标通道暂时写不进(非阻塞通道、管道已满)时transferTo返回0，改为读出后写入
+						if(buf==null)
+							buf=ByteBuffer.allocate((int)Math.min(size-pos, 64*1024));
+						buf.clear();
+						buf.limit((int)Math.min(buf.capacity(), size-pos));
+						n=in.read(buf, pos);
+						if(n<=0)
+							throw new IOException("temp file "+file.getAbsolutePath()+" truncated at "+pos+", expected "+size+" bytes");
+						buf.flip();
+						writeFully(target, buf);
+					}
+					pos+=n;
+				}
+				return size;
+			}finally{
+				in.close();
+			}
+		}
+		throw new IllegalStateException("Current state is "+ state);
+	}
+	
+	private ByteBuffer[] duplicateViews(){
+		ByteBuffer[] result=new ByteBuffer[views.length];
+		for(int i=0;i<views.length;i++){
+			result[i]=views[i].duplicate();
+			result[i].rewind();
+		}
+		return result;
+	}
+	
+	/**
+	 * 清空对象，可以进行下一次收取数据操作。已分配的内存块会保留下来重复使用，但{@link #wrap(byte[])}传入的数组不会被写入。
+	 */
+	public void clear(){
+		IOUtils.closeQuietly(channel);
+		channel=null;
+		if(file!=null){
+			// 在Windows上内存映射未被回收前文件无法删除
+			if(file.exists() && !file.delete()){
+				file.deleteOnExit();
+			}
 			file=null;
-			state=RECEIVE_MEM;	
 		}
+		if(wrapped){
+			capacity-=chunks[0].capacity();
+			System.arraycopy(chunks, 1, chunks, 0, chunkCount-1);
+			chunks[--chunkCount]=null;
+			wrapped=false;
+		}
+		for(int i=0;i<chunkCount;i++){
+			chunks[i].clear();
+		}
+		if(spillBuffer!=null){
+			spillBuffer.clear();
+		}
+		current=0;
+		views=null;
+		output=null;
+		state=RECEIVE_MEM;
 		length=0;
 	}
 	
-	private void createFile(){
-		try {
-			file=File.createTempFile("~temp", ".buf");
-			out=new FileOutputStream(file);
-			memCache.flip();
-			out.getChannel().write(memCache);
-			memCache.clear();//不再使用的内存区域
-			state=RECEIVE_FILE;
-		} catch (IOException e) {
-			throw new IllegalStateException(e);
-		}	
+	private ByteBuffer writableChunk(){
+		if(chunkCount>0){
+			ByteBuffer chunk=chunks[current];
+			if(chunk.hasRemaining())
+				return chunk;
+			if(current+1<chunkCount)
+				return chunks[++current];
+		}
+		int size=(int)Math.min(MAX_CHUNK_SIZE, Math.max(INITIAL_CHUNK_SIZE, capacity));
+		ByteBuffer chunk=direct?ByteBuffer.allocateDirect(size):ByteBuffer.allocate(size);
+		if(chunkCount==chunks.length){
+			ByteBuffer[] newChunks=new ByteBuffer[chunks.length*2];
+			System.arraycopy(chunks, 0, newChunks, 0, chunkCount);
+			chunks=newChunks;
+		}
+		chunks[chunkCount]=chunk;
+		current=chunkCount++;
+		capacity+=size;
+		return chunk;
+	}
+	
+	/*
+	 * 将内存中的数据写入文件，之后的数据都写入文件
+	 */
+	private void createFile() throws IOException{
+		file=File.createTempFile("~temp", ".buf");
+		channel=FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+		for(int i=0;i<chunkCount && i<=current;i++){
+			ByteBuffer chunk=chunks[i].duplicate();
+			chunk.flip();
+			writeFully(channel, chunk);
+			chunks[i].clear();//不再使用的内存区域，保留以备clear后重用
+		}
+		current=0;
+		if(spillBuffer==null){
+			spillBuffer=direct?ByteBuffer.allocateDirect(SPILL_BUFFER_SIZE):ByteBuffer.allocate(SPILL_BUFFER_SIZE);
+		}
+		views=null;
+		output=null;
+		state=RECEIVE_FILE;
+		if(logger.isDebugEnabled())
+			logger.debug("BigDataBuffer exceeds {} bytes, spilled to {}", threshold, file);
+	}
+	
+	private void flushSpillBuffer() throws IOException{
+		if(spillBuffer.position()==0)
+			return;
+		spillBuffer.flip();
+		writeFully(channel, spillBuffer);
+		spillBuffer.clear();
+	}
+	
+	/*
+	 * 将文件以只读方式映射到内存，超过1G的文件分段映射
+	 */
+	private ByteBuffer[] mapFile() throws IOException{
+		FileChannel in=FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try{
+			long size=in.size();
+			int count=(int)((size+MAP_SEGMENT_SIZE-1)/MAP_SEGMENT_SIZE);
+			ByteBuffer[] result=new ByteBuffer[count];
+			for(int i=0;i<count;i++){
+				long pos=i*MAP_SEGMENT_SIZE;
+				result[i]=in.map(MapMode.READ_ONLY, pos, Math.min(MAP_SEGMENT_SIZE, size-pos));
+			}
+			return result;
+		}finally{
+			in.close();//关闭通道后映射依然有效
+		}
+	}
+	
+	private static void writeFully(WritableByteChannel channel,ByteBuffer buf) throws IOException{
+		while(buf.hasRemaining()){
+			channel.write(buf);
+		}
 	}
 	
 	/**
@@ -216,7 +581,20 @@ public class BigDataBuffer extends OutputStream {
 	 * @param len
 	 */
 	public void putByte(byte[] buff, int offset, int len){
-		System.arraycopy(memCache.array(), offset, buff, 0, len);
+		long chunkStart=0;
+		int copied=0;
+		for(int i=0;i<chunkCount && copied<len;i++){
+			ByteBuffer chunk=chunks[i].duplicate();
+			long chunkEnd=chunkStart+chunk.capacity();
+			if(offset+copied<chunkEnd){
+				chunk.clear();
+				chunk.position((int)(offset+copied-chunkStart));
+				int n=Math.min(len-copied, chunk.remaining());
+				chunk.get(buff, copied, n);
+				copied+=n;
+			}
+			chunkStart=chunkEnd;
+		}
 	}
 
 	/**
@@ -258,7 +636,7 @@ public class BigDataBuffer extends OutputStream {
 	 */
 	public static BigDataBuffer wrap(InputStream in){
 		BigDataBuffer bb=new BigDataBuffer();
-		byte[] buf=new byte[1024];
+		byte[] buf=BufferPool.DEFAULT.borrow();
 		try{
 			int n;
 			while((n=in.read(buf))>-1){
@@ -267,6 +645,8 @@ public class BigDataBuffer extends OutputStream {
 			IOUtils.closeQuietly(in);
 		}catch(IOException e){
 			throw new RuntimeException(e.getCause());
+		}finally{
+			BufferPool.DEFAULT.release(buf);
 		}
 		return bb;
 	}
@@ -276,16 +656,15 @@ public class BigDataBuffer extends OutputStream {
 	 * @return
 	 */
 	public File toFile() {
-		if(state==RECEIVE_MEM){
-			createFile();
-		}
-		if(state==OPEN_MEM){
-			memCache.rewind();
-			createFile();
-		}
-		if(state==RECEIVE_FILE){
-			IOUtils.closeQuietly(out);
-			state=OPEN_FILE;
+		try{
+			if(state==RECEIVE_MEM || state==OPEN_MEM){
+				createFile();
+			}
+			if(state==RECEIVE_FILE){
+				flip();
+			}
+		}catch(IOException e){
+			throw new IllegalStateException(e);
 		}
 		if(state==OPEN_FILE){
 			return file;	
@@ -0,0 +1,176 @@
+package com.github.xuse.jmxspy.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 固定大小的缓冲区池。用于在IO流之间复用缓冲区，避免每个文件/每条记录都分配新的byte[]。
+ * <p>
+ * 池中的槽位是定长数组，借出和归还都是CAS操作，不需要加锁，稳定状态下不产生任何内存分配。
+ * 池满时归还的缓冲区直接丢弃，池空时借用则新分配。通过{@link #getAllocated()}等计数器可以确认稳定状态下是否还有分配发生。
+ * <p>
+ * 默认池的大小可以通过系统参数配置：
+ * <ul>
+ * <li>jmxspy.buffer.size 每个缓冲区的字节数，默认64K</li>
+ * <li>jmxspy.buffer.pooled 池中最多保留的缓冲区数量，默认32</li>
+ * <li>jmxspy.buffer.direct 是否使用堆外内存作为{@link #borrowBuffer()}的缓冲区，默认false</li>
+ * </ul>
+ *
+ * @author Joey
+ */
+public class BufferPool {
+	public static final BufferPool DEFAULT = new BufferPool(Integer.getInteger("jmxspy.buffer.size", 64 * 1024), Integer.getInteger("jmxspy.buffer.pooled", 32), Boolean.getBoolean("jmxspy.buffer.direct"));
+
+	private final int bufferSize;
+	private final boolean direct;
+	private final AtomicReferenceArray<byte[]> arrays;
+	private final AtomicReferenceArray<ByteBuffer> buffers;
+
+	private final AtomicLong allocated = new AtomicLong();
+	private final AtomicLong borrowed = new AtomicLong();
+	private final AtomicLong released = new AtomicLong();
+	private final AtomicLong discarded = new AtomicLong();
+
+	/**
+	 * 构造
+	 *
+	 * @param bufferSize 每个缓冲区的大小
+	 * @param maxPooled  池中最多保留的缓冲区数量
+	 * @param direct     {@link #borrowBuffer()}是否分配堆外内存
+	 */
+	public BufferPool(int bufferSize, int maxPooled, boolean direct) {
+		Assert.isTrue(bufferSize > 0, "buffer size must be positive.");
+		Assert.isTrue(maxPooled >= 0, "max pooled must not be negative.");
+		this.bufferSize = bufferSize;
+		this.direct = direct;
+		this.arrays = new AtomicReferenceArray<byte[]>(maxPooled);
+		this.buffers = new AtomicReferenceArray<ByteBuffer>(maxPooled);
+	}
+
+	/**
+	 * 借用一个byte[]，长度为{@link #getBufferSize()}
+	 *
+	 * @return
+	 */
+	public byte[] borrow() {
+		borrowed.incrementAndGet();
+		for (int i = 0; i < arrays.length(); i++) {
+			byte[] b = arrays.get(i);
+			if (b != null && arrays.compareAndSet(i, b, null)) {
+				return b;
+			}
+		}
+		allocated.incrementAndGet();
+		return new byte[bufferSize];
+	}
+
+	/**
+	 * 归还byte[]，长度不符的数组会被忽略
+	 *
+	 * @param b
+	 */
+	public void release(byte[] b) {
+		if (b == null || b.length != bufferSize)
+			return;
+		released.incrementAndGet();
+		for (int i = 0; i < arrays.length(); i++) {
+			if (arrays.get(i) == null && arrays.compareAndSet(i, null, b)) {
+				return;
+			}
+		}
+		discarded.incrementAndGet();
+	}
+
+	/**
+	 * 借用一个ByteBuffer，容量为{@link #getBufferSize()}，position为0，limit等于容量。
+	 *
+	 * @return
+	 */
+	public ByteBuffer borrowBuffer() {
+		borrowed.incrementAndGet();
+		for (int i = 0; i < buffers.length(); i++) {
+			ByteBuffer b = buffers.get(i);
+			if (b != null && buffers.compareAndSet(i, b, null)) {
+				b.clear();
+				return b;
+			}
+		}
+		allocated.incrementAndGet();
+		return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+	}
+
+	/**
+	 * 归还ByteBuffer，容量不符的缓冲区会被忽略
+	 *
+	 * @param b
+	 */
+	public void release(ByteBuffer b) {
+		if (b == null || b.capacity() != bufferSize || b.isDirect() != direct)
+			return;
+		released.incrementAndGet();
+		for (int i = 0; i < buffers.length(); i++) {
+			if (buffers.get(i) == null && buffers.compareAndSet(i, null, b)) {
+				return;
+			}
+		}
+		discarded.incrementAndGet();
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * @return 因池中没有空闲缓冲区而新分配的次数
+	 */
+	public long getAllocated() {
+		return allocated.get();
+	}
+
+	/**
+	 * @return 借用次数
+	 */
+	public long getBorrowed() {
+		return borrowed.get();
+	}
+
+	/**
+	 * @return 归还次数
+	 */
+	public long getReleased() {
+		return released.get();
+	}
+
+	/**
+	 * @return 因池已满而丢弃的次数
+	 */
+	public long getDiscarded() {
+		return discarded.get();
+	}
+
+	/**
+	 * 计数器清零
+	 */
+	public void resetStatistics() {
+		allocated.set(0);
+		borrowed.set(0);
+		released.set(0);
+		discarded.set(0);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("BufferPool[");
+		sb.append(bufferSize).append(direct ? " bytes direct" : " bytes heap");
+		sb.append(", allocated:").append(allocated.get());
+		sb.append(", borrowed:").append(borrowed.get());
+		sb.append(", released:").append(released.get());
+		sb.append(", discarded:").append(discarded.get()).append(']');
+		return sb.toString();
+	}
+}
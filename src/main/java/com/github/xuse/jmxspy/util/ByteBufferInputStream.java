@@ -15,9 +15,13 @@
  */
 package com.github.xuse.jmxspy.util;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 public class ByteBufferInputStream extends InputStream {
 
@@ -74,6 +78,25 @@ public class ByteBufferInputStream extends InputStream {
 		}
 	}
 
+	/*
+	 * 将剩余的数据直接写出，不经过中间的缓冲区
+	 */
+	long writeTo(OutputStream out) throws IOException {
+		if (bb == null)
+			throw new IOException("read on a closed InputStream");
+		int n = bb.remaining();
+		if (bb.hasArray()) {
+			out.write(bb.array(), bb.arrayOffset() + bb.position(), n);
+			bb.position(bb.limit());
+		} else {
+			out.flush();
+			WritableByteChannel channel = out instanceof FileOutputStream ? ((FileOutputStream) out).getChannel() : Channels.newChannel(out);
+			while (bb.hasRemaining())
+				channel.write(bb);
+		}
+		return n;
+	}
+
 	public int available() throws IOException {
 		if (bb == null)
 			throw new IOException("available on a closed InputStream");
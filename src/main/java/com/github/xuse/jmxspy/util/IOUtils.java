@@ -16,10 +16,30 @@ import java.io.Reader;
 import java.io.Writer;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 
 public class IOUtils {
 	private static final int DEFAULT_BUFFER_SIZE = 4096;
+	/**
+	 * 文件之间拷贝时每次transferTo的最大长度
+	 */
+	private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+	/**
+	 * 拷贝进度回调的间隔字节数
+	 */
+	private static final long PROGRESS_INTERVAL = 1024 * 1024;
+
+	/**
+	 * 拷贝进度回调
+	 */
+	public interface ProgressListener {
+		/**
+		 * @param copied         已拷贝的字节数
+		 * @param bytesPerSecond 从开始到现在的平均速度(字节/秒)
+		 */
+		void onProgress(long copied, double bytesPerSecond);
+	}
 
 	public static void closeQuietly(Closeable c) {
 		try {
@@ -113,26 +133,54 @@ public class IOUtils {
 	 * the stream. False indicates, that only {@link OutputStream#flush()} should be
 	 * called finally.
 	 * 
-	 * @param pBuffer Temporary buffer, which is to be used for copying data.
+	 * @param listener 进度回调，可以为null
+	 * 
+	 * 输入输出都是文件流时使用{@link FileChannel#transferTo}由内核拷贝；{@link BigDataBuffer}和{@link ByteBufferInputStream}
+	 * 的数据直接写出；其余情况使用{@link BufferPool}中的缓冲区。
 	 * 
 	 * @return Number of bytes, which have been copied.
 	 * 
 	 * @throws IOException An I/O error occurred.
 	 */
-	private static long copy(InputStream in, OutputStream out, boolean inClose, boolean outClose, byte[] pBuffer) throws IOException {
+	private static long doCopy(InputStream in, OutputStream out, boolean inClose, boolean outClose, ProgressListener listener) throws IOException {
 		if (in == null)
 			throw new NullPointerException();
 		long total = 0;
+		long start = System.nanoTime();
 		try {
-			int res;
-			while ((res = in.read(pBuffer)) != -1) {
-				if (out != null) {
-					out.write(pBuffer, 0, res);
+			if (out != null && in instanceof BigDataBuffer.InnerInputStream) {
+				// 内存块或映射的文件直接写出，不经过缓冲区
+				total = ((BigDataBuffer.InnerInputStream) in).writeTo(out);
+			} else if (out != null && in instanceof ByteBufferInputStream) {
+				total = ((ByteBufferInputStream) in).writeTo(out);
+			} else {
+				// 子类可能重写了read/write(计数、过滤等)，只有确切的FileInputStream/FileOutputStream才能绕过流直接拷贝
+				if (in != null && out != null && in.getClass() == FileInputStream.class && out.getClass() == FileOutputStream.class) {
+					total = transfer(((FileInputStream) in).getChannel(), ((FileOutputStream) out).getChannel(), listener, start);
+				}
+				// transferTo未拷贝完的部分(/proc文件、管道、设备，或拷贝中途变长的文件)继续用缓冲区读写
+				byte[] buf = BufferPool.DEFAULT.borrow();
+				try {
+					long reported = total;
+					int res;
+					while ((res = in.read(buf)) != -1) {
+						if (out != null) {
+							out.write(buf, 0, res);
+						}
+						total += res;
+						if (listener != null && total - reported >= PROGRESS_INTERVAL) {
+							reported = total;
+							fireProgress(listener, total, start);
+						}
+					}
+				} finally {
+					BufferPool.DEFAULT.release(buf);
 				}
-				total += res;
 			}
 			if (out != null)
 				out.flush();
+			if (listener != null)
+				fireProgress(listener, total, start);
 		} finally {
 			if (outClose)
 				closeQuietly(out);
@@ -142,6 +190,35 @@ public class IOUtils {
 		return total;
 	}
 
+	/*
+	 * 从输入通道的当前位置按size()拷贝到末尾，完成后输入通道的位置移动到已拷贝处，和流的读取语义一致。
+	 * 只有普通文件的size()可信，/proc文件、管道和字符设备的size()为0，此时不拷贝，由调用者继续按流读取；
+	 * transferTo中途返回0时也一样。
+	 */
+	private static long transfer(FileChannel in, FileChannel out, ProgressListener listener, long start) throws IOException {
+		long pos = in.position();
+		long size = in.size();
+		long total = 0;
+		if (size <= pos)
+			return 0;
+		while (pos < size) {
+			long n = in.transferTo(pos, Math.min(TRANSFER_CHUNK_SIZE, size - pos), out);
+			if (n <= 0)
+				break;
+			pos += n;
+			total += n;
+			if (listener != null && pos < size)
+				fireProgress(listener, total, start);
+		}
+		in.position(pos);
+		return total;
+	}
+
+	private static void fireProgress(ProgressListener listener, long copied, long start) {
+		long nanos = System.nanoTime() - start;
+		listener.onProgress(copied, nanos == 0 ? 0 : copied * 1000000000D / nanos);
+	}
+
 	/*
 	 * 同上、READER和Writer之间的拷贝
 	 */
@@ -179,7 +256,22 @@ public class IOUtils {
 	 * @throws IOException
 	 */
 	public static long copy(InputStream in, OutputStream out, boolean inClose, boolean outClose) throws IOException {
-		return copy(in, out, inClose, outClose, new byte[DEFAULT_BUFFER_SIZE]);
+		return doCopy(in, out, inClose, outClose, null);
+	}
+
+	/**
+	 * 流之间拷贝，并报告进度
+	 * 
+	 * @param in       输入
+	 * @param out      输出
+	 * @param inClose  关闭输入流？
+	 * @param outClose 关闭输出流?
+	 * @param listener 进度回调，大约每拷贝1M回调一次，结束时再回调一次
+	 * @return 拷贝长度
+	 * @throws IOException
+	 */
+	public static long copy(InputStream in, OutputStream out, boolean inClose, boolean outClose, ProgressListener listener) throws IOException {
+		return doCopy(in, out, inClose, outClose, listener);
 	}
 
 	/**
@@ -219,7 +311,7 @@ public class IOUtils {
 	 * @throws IOException
 	 */
 	public static long copy(InputStream in, OutputStream out, boolean closeOutStream) throws IOException {
-		return copy(in, out, true, closeOutStream, new byte[DEFAULT_BUFFER_SIZE]);
+		return doCopy(in, out, true, closeOutStream, null);
 	}
 
 	/**
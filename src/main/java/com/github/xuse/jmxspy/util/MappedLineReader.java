@@ -0,0 +1,125 @@
+package com.github.xuse.jmxspy.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于内存映射的按行读取工具，适合处理数G的文本文件。
+ * <p>
+ * 文件按段映射到内存，直接在映射区中查找换行符，每行只做一次解码，没有FileInputStream和Reader的多层拷贝。
+ * 跨段的行会自动拼接。行尾的\n和\r\n都会被去掉。
+ * 仅支持换行符为单字节'\n'的编码(UTF-8、GBK、GB18030等)，不支持UTF-16。
+ *
+ * @author Joey
+ */
+public class MappedLineReader implements Closeable {
+	private static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+
+	private final FileChannel channel;
+	private final Charset charset;
+	private final long size;
+	private final long segmentSize;
+	private MappedByteBuffer segment;
+	private long nextSegmentStart;
+	private byte[] line = new byte[256];
+	private long lineNumber;
+
+	public MappedLineReader(File file) throws IOException {
+		this(file, StringUtils.UTF8);
+	}
+
+	public MappedLineReader(File file, Charset charset) throws IOException {
+		this(file, charset, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param file        文件
+	 * @param charset     编码
+	 * @param segmentSize 每次映射的大小
+	 * @throws IOException
+	 */
+	public MappedLineReader(File file, Charset charset, long segmentSize) throws IOException {
+		Assert.isTrue(segmentSize > 0 && segmentSize <= Integer.MAX_VALUE, "invalid segment size.");
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.charset = charset;
+		this.size = channel.size();
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * 读取一行
+	 *
+	 * @return 不含行尾换行符的文本，到达文件末尾返回null
+	 * @throws IOException
+	 */
+	public String readLine() throws IOException {
+		int len = 0;
+		boolean found = false;
+		boolean any = false;
+		while (true) {
+			if (segment == null || !segment.hasRemaining()) {
+				if (!nextSegment())
+					break;
+			}
+			any = true;
+			int pos = segment.position();
+			int limit = segment.limit();
+			int i = pos;
+			while (i < limit && segment.get(i) != '\n') {
+				i++;
+			}
+			int n = i - pos;
+			ensureCapacity(len + n);
+			segment.get(line, len, n);
+			len += n;
+			if (i < limit) {
+				segment.get();// 跳过\n
+				found = true;
+				break;
+			}
+		}
+		if (!found && (!any || len == 0))
+			return null;
+		if (len > 0 && line[len - 1] == '\r')
+			len--;
+		lineNumber++;
+		return new String(line, 0, len, charset);
+	}
+
+	/**
+	 * @return 已读取的行数
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	public void close() throws IOException {
+		segment = null;
+		channel.close();
+	}
+
+	private boolean nextSegment() throws IOException {
+		if (nextSegmentStart >= size)
+			return false;
+		long len = Math.min(segmentSize, size - nextSegmentStart);
+		segment = channel.map(MapMode.READ_ONLY, nextSegmentStart, len);
+		nextSegmentStart += len;
+		return true;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > line.length) {
+			byte[] newLine = new byte[Math.max(capacity, line.length * 2)];
+			System.arraycopy(line, 0, newLine, 0, line.length);
+			line = newLine;
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package com.github.xuse.jmxspy.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.github.xuse.jmxspy.util.ZipUtils.EntryProcessor;
+import com.github.xuse.jmxspy.util.zip.TarEntry;
+import com.github.xuse.jmxspy.util.zip.TarHeaderScanner;
+import com.github.xuse.jmxspy.util.zip.ZipOutputStream;
+
+/**
+ * 多线程解压工具。
+ * <ul>
+ * <li>zip: 通过中央目录(central directory)获得全部条目，每个条目由工作线程独立解压。</li>
+ * <li>tar: 仅支持未压缩的单卷tar文件，预先扫描各条目的数据偏移，工作线程使用FileChannel.transferTo直接拷贝。</li>
+ * </ul>
+ * 目录的创建在派发线程上批量完成，且每个目录只mkdirs一次。EntryProcessor的回调也只在派发线程上执行，因此无需线程安全。
+ *
+ * @author Joey
+ */
+public class ParallelExtractor {
+	/**
+	 * 每个工作线程使用的缓冲区大小
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+	/**
+	 * 超过该大小的文件在写入前先预分配磁盘空间
+	 */
+	public static final long DEFAULT_PREALLOCATE_SIZE = 4 * 1024 * 1024;
+
+	private final int threads;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private long preallocateSize = DEFAULT_PREALLOCATE_SIZE;
+
+	private final Set<String> createdFolders = new HashSet<String>();
+	private final AtomicReference<IOException> error = new AtomicReference<IOException>();
+	private final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[bufferSize];
+		}
+	};
+
+	/**
+	 * 构造
+	 *
+	 * @param threads 工作线程数，小于等于0时使用CPU核数
+	 */
+	public ParallelExtractor(int threads) {
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		Assert.isTrue(bufferSize > 0);
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * 设置需要预分配空间的文件大小阈值，0表示不预分配
+	 *
+	 * @param preallocateSize
+	 */
+	public void setPreallocateSize(long preallocateSize) {
+		this.preallocateSize = preallocateSize;
+	}
+
+	/**
+	 * 并行解压zip文件
+	 *
+	 * @param file      zip文件（不支持分卷）
+	 * @param unzipPath 解压路径
+	 * @param charSet   压缩包内的文件名编码，为null时使用{@link ZipOutputStream#DEFAULT_NAME_ENCODING}
+	 * @param cd        压缩处理器(可为null)
+	 * @throws IOException
+	 */
+	public void unzip(File file, String unzipPath, String charSet, EntryProcessor cd) throws IOException {
+		Charset cs = Charset.forName(charSet == null ? ZipOutputStream.DEFAULT_NAME_ENCODING : charSet);
+		final ZipFile zip = new ZipFile(file, cs);
+		ExecutorService pool = createPool();
+		try {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements() && error.get() == null) {
+				final ZipEntry entry = entries.nextElement();
+				String entryName = entry.getName();
+				if (cd != null) {
+					entryName = cd.getExtractName(entryName, entry.getCompressedSize(), entry.getSize());
+				}
+				if (entryName != null) {
+					final File output = new File(unzipPath, entryName);
+					if (entryName.endsWith("/")) {
+						ensureFolder(output);
+					} else {
+						ensureFolder(output.getParentFile());
+						pool.execute(new Runnable() {
+							public void run() {
+								if (error.get() != null)
+									return;
+								try {
+									InputStream in = zip.getInputStream(entry);
+									try {
+										writeFile(in, output, entry.getSize());
+									} finally {
+										in.close();
+									}
+								} catch (IOException e) {
+									error.compareAndSet(null, e);
+								}
+							}
+						});
+					}
+				}
+				if (cd != null && cd.breakProcess())
+					break;
+			}
+		} finally {
+			awaitTermination(pool);
+			zip.close();
+		}
+		throwIfFailed();
+	}
+
+	/**
+	 * 并行解压未压缩的tar文件
+	 *
+	 * @param file      tar文件（不支持分卷和tar.gz）
+	 * @param unzipPath 解压路径
+	 * @param cd        压缩处理器(可为null)
+	 * @throws IOException
+	 */
+	public void untar(File file, String unzipPath, EntryProcessor cd) throws IOException {
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		ExecutorService pool = createPool();
+		try {
+			TarHeaderScanner scanner = new TarHeaderScanner(channel);
+			TarEntry entry;
+			while ((entry = scanner.next()) != null && error.get() == null) {
+				String entryName = entry.getName();
+				if (cd != null) {
+					entryName = cd.getExtractName(entryName, entry.getSize(), entry.getSize());
+				}
+				if (entryName != null) {
+					final File output = new File(unzipPath, entryName);
+					if (entry.isDirectory()) {
+						ensureFolder(output);
+					} else {
+						ensureFolder(output.getParentFile());
+						final long offset = scanner.getDataOffset();
+						final long size = entry.getSize();
+						pool.execute(new Runnable() {
+							public void run() {
+								if (error.get() != null)
+									return;
+								try {
+									transferFile(channel, offset, size, output);
+								} catch (IOException e) {
+									error.compareAndSet(null, e);
+								}
+							}
+						});
+					}
+				}
+				if (cd != null && cd.breakProcess())
+					break;
+			}
+		} finally {
+			awaitTermination(pool);
+			channel.close();
+		}
+		throwIfFailed();
+	}
+
+	/*
+	 * 目录仅在派发线程上创建，工作线程开始写文件时父目录必然已存在。
+	 */
+	private void ensureFolder(File folder) {
+		if (folder == null)
+			return;
+		if (createdFolders.add(folder.getPath())) {
+			IOUtils.createFolder(folder);
+			for (File p = folder.getParentFile(); p != null && createdFolders.add(p.getPath()); p = p.getParentFile())
+				;
+		}
+	}
+
+	private void writeFile(InputStream in, File output, long size) throws IOException {
+		byte[] buf = buffers.get();
+		RandomAccessFile out = openOutput(output, size);
+		try {
+			int n;
+			while ((n = in.read(buf)) != -1) {
+				out.write(buf, 0, n);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private void transferFile(FileChannel source, long offset, long size, File output) throws IOException {
+		RandomAccessFile out = openOutput(output, size);
+		try {
+			FileChannel target = out.getChannel();
+			long pos = 0;
+			while (pos < size) {
+				long n = source.transferTo(offset + pos, size - pos, target);
+				if (n <= 0)
+					throw new IOException("unexpected EOF with " + (size - pos) + " bytes unread for " + output.getName());
+				pos += n;
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/*
+	 * 大文件预先设置长度，否则截断可能已存在的同名文件
+	 */
+	private RandomAccessFile openOutput(File output, long size) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(output, "rw");
+		try {
+			raf.setLength(preallocateSize > 0 && size >= preallocateSize ? size : 0);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+		return raf;
+	}
+
+	private ExecutorService createPool() {
+		error.set(null);
+		createdFolders.clear();
+		final AtomicInteger seq = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "extract-worker-" + seq.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	private void awaitTermination(ExecutorService pool) throws IOException {
+		pool.shutdown();
+		try {
+			while (!pool.awaitTermination(1, TimeUnit.SECONDS))
+				;
+		} catch (InterruptedException e) {
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IOException("extraction interrupted", e);
+		}
+	}
+
+	private void throwIfFailed() throws IOException {
+		IOException e = error.get();
+		if (e != null)
+			throw e;
+	}
+}
@@ -20,6 +20,9 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.github.xuse.jmxspy.util.string.AhoCorasick;
+import com.github.xuse.jmxspy.util.string.CharTokenizer;
+
 public final class StringUtils extends org.apache.commons.lang3.StringUtils{
 	public static final byte CR = 0x0D;
 	public static final byte LF = 0x0A;
@@ -43,15 +46,37 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils{
 			return text.substring(0, length);
 		}
 		StringBuilder sb = new StringBuilder(length);
-		if (padOnLeft) {
-			repeat(sb, padChar, length - text.length());
-		}
-		sb.append(text);
-		if (!padOnLeft) {
-			repeat(sb, padChar, length - text.length());
-		}
+		appendFixLength(sb, text, length, padOnLeft, padChar);
 		return sb.toString();
 	}
+
+	/**
+	 * 将文本截断或填充为固定长度后直接写入Appendable，不生成中间的String。用于逐行输出的表格等场合。
+	 * 
+	 * @param out       输出
+	 * @param text      文本
+	 * @param length    长度
+	 * @param padOnLeft true在左侧填充(右对齐)，false在右侧填充
+	 * @param padChar   填充字符
+	 */
+	public static void appendFixLength(Appendable out, CharSequence text, int length, boolean padOnLeft, char padChar) {
+		int len = text.length();
+		try {
+			if (len >= length) {
+				out.append(text, 0, length);
+				return;
+			}
+			if (padOnLeft) {
+				repeat(out, padChar, length - len);
+			}
+			out.append(text);
+			if (!padOnLeft) {
+				repeat(out, padChar, length - len);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+	}
 	
 	/**
 	 * 在StringBuilder或各种Appendable中重复添加某个字符串若干次
@@ -121,8 +146,25 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils{
 		return splitWorker(str, separatorChar, false);
 	}
 
+	/**
+	 * 按字符分隔文本，规则与{@link #split(String, char)}相同，但逐个访问片段而不生成数组。
+	 * 
+	 * @param text          文本
+	 * @param separatorChar 分隔符
+	 * @return 分隔游标
+	 */
+	public static CharTokenizer tokenize(CharSequence text, char separatorChar) {
+		return new CharTokenizer(text, separatorChar);
+	}
+
 	public static final String[] EMPTY_STRING_ARRAY = new String[0];
 
+	/**
+	 * replaceEach的查找串个数和文本长度都达到以下值时使用Aho-Corasick，否则构造自动机的开销得不偿失
+	 */
+	private static final int AHO_CORASICK_MIN_SEARCHES = 8;
+	private static final int AHO_CORASICK_MIN_LENGTH = 256;
+
 	/**
 	 * Performs the logic for the <code>split</code> and
 	 * <code>splitPreserveAllTokens</code> methods that do not return a maximum
@@ -283,6 +325,37 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils{
 		return replaceEach(text, searchList, replacementList, false, 0);
 	}
 
+	/**
+	 * 同{@link #replaceEach(String, String[], String[])}，使用预先构造的{@link AhoCorasick}，适合用同一组字符串反复替换。
+	 * 
+	 * @param text            文本
+	 * @param searches        要查找的字符串
+	 * @param replacementList 对应的替换字符串，个数与searches相同，不能为null
+	 * @return 替换后的文本
+	 */
+	public static String replaceEach(String text, AhoCorasick searches, String[] replacementList) {
+		if (text == null || text.length() == 0) {
+			return text;
+		}
+		if (searches.size() != replacementList.length) {
+			throw new IllegalArgumentException("Search and Replace array lengths don't match: " + searches.size() + " vs " + replacementList.length);
+		}
+		int[] id = new int[1];
+		int textIndex = searches.find(text, 0, id);
+		if (textIndex == -1) {
+			return text;
+		}
+		StringBuilder buf = new StringBuilder(text.length() + text.length() / 5);
+		int start = 0;
+		while (textIndex != -1) {
+			buf.append(text, start, textIndex).append(replacementList[id[0]]);
+			start = textIndex + searches.getPatternLength(id[0]);
+			textIndex = searches.find(text, start, id);
+		}
+		buf.append(text, start, text.length());
+		return buf.toString();
+	}
+
 	/**
 	 * <p>
 	 * Replaces all occurrences of Strings within another String.
@@ -348,6 +421,19 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils{
 			throw new IllegalArgumentException("Search and Replace array lengths don't match: " + searchLength + " vs " + replacementLength);
 		}
 
+		// 查找串较多时，每个位置对每个查找串indexOf的代价太大，改为一遍扫描的Aho-Corasick
+		if (searchLength >= AHO_CORASICK_MIN_SEARCHES && text.length() >= AHO_CORASICK_MIN_LENGTH) {
+			String[] searches = new String[searchLength];
+			for (int i = 0; i < searchLength; i++) {
+				searches[i] = replacementList[i] == null ? null : searchList[i];
+			}
+			String result = replaceEach(text, new AhoCorasick(searches), replacementList);
+			if (!repeat || result == text) {
+				return result;
+			}
+			return replaceEach(result, searchList, replacementList, repeat, timeToLive - 1);
+		}
+
 		// keep track of which still have matches
 		boolean[] noMoreMatchesForReplIndex = new boolean[searchLength];
 
@@ -401,13 +487,11 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils{
 		// have upper-bound at 20% increase, then let Java take over
 		increase = Math.min(increase, text.length() / 5);
 
-		StringBuffer buf = new StringBuffer(text.length() + increase);
+		StringBuilder buf = new StringBuilder(text.length() + increase);
 
 		while (textIndex != -1) {
 
-			for (int i = start; i < textIndex; i++) {
-				buf.append(text.charAt(i));
-			}
+			buf.append(text, start, textIndex);
 			buf.append(replacementList[replaceIndex]);
 
 			start = textIndex + searchList[replaceIndex].length();
@@ -436,10 +520,7 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils{
 			// NOTE: logic duplicated above END
 
 		}
-		int textLength = text.length();
-		for (int i = start; i < textLength; i++) {
-			buf.append(text.charAt(i));
-		}
+		buf.append(text, start, text.length());
 		String result = buf.toString();
 		if (!repeat) {
 			return result;
@@ -763,4 +844,75 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils{
 	 * @since 2.1
 	 */
 	public static final int INDEX_NOT_FOUND = -1;
+
+	/**
+	 * 性能对比：split与tokenize，逐个indexOf的replaceEach(commons-lang)与Aho-Corasick，toFixLengthString与appendFixLength
+	 */
+	public static void main(String[] args) {
+		final int LOOPS = 200000;
+		String line = "volumn.part001.zip\t104857600\t1a2b3c4d\tok\t\t2019-01-01 12:00:00";
+		String[] searches = new String[32];
+		String[] replacements = new String[32];
+		for (int i = 0; i < searches.length; i++) {
+			searches[i] = "${var" + i + "}";
+			replacements[i] = "value" + i;
+		}
+		StringBuilder tb = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			tb.append("text ").append(searches[i * 7 % searches.length]).append(" more text, ");
+		}
+		String text = tb.toString();
+		AhoCorasick compiled = new AhoCorasick(searches);
+		for (int round = 0; round < 3; round++) {
+			long count = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < LOOPS; i++) {
+				count += split(line, '\t').length;
+			}
+			long t1 = System.nanoTime() - start;
+			start = System.nanoTime();
+			CharTokenizer tokenizer = new CharTokenizer(line, '\t');
+			for (int i = 0; i < LOOPS; i++) {
+				tokenizer.reset(line);
+				while (tokenizer.next())
+					count++;
+			}
+			long t2 = System.nanoTime() - start;
+			System.out.println("split:" + t1 / LOOPS + "ns tokenize:" + t2 / LOOPS + "ns");
+
+			start = System.nanoTime();
+			for (int i = 0; i < LOOPS / 10; i++) {
+				count += org.apache.commons.lang3.StringUtils.replaceEach(text, searches, replacements).length();
+			}
+			t1 = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < LOOPS / 10; i++) {
+				count += replaceEach(text, searches, replacements).length();
+			}
+			t2 = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < LOOPS / 10; i++) {
+				count += replaceEach(text, compiled, replacements).length();
+			}
+			long t3 = System.nanoTime() - start;
+			System.out.println("replaceEach(32) indexOf:" + t1 * 10 / LOOPS + "ns aho-corasick:" + t2 * 10 / LOOPS + "ns precompiled:" + t3 * 10 / LOOPS + "ns");
+
+			start = System.nanoTime();
+			for (int i = 0; i < LOOPS; i++) {
+				String row = toFixLengthString(searches[i & 31], 16, false, ' ') + "\t" + replacements[i & 31];
+				count += row.length();
+			}
+			t1 = System.nanoTime() - start;
+			StringBuilder sb = new StringBuilder();
+			start = System.nanoTime();
+			for (int i = 0; i < LOOPS; i++) {
+				sb.setLength(0);
+				appendFixLength(sb, searches[i & 31], 16, false, ' ');
+				sb.append('\t').append(replacements[i & 31]);
+				count += sb.length();
+			}
+			t2 = System.nanoTime() - start;
+			System.out.println("toFixLengthString:" + t1 / LOOPS + "ns appendFixLength:" + t2 / LOOPS + "ns (" + count + ")");
+		}
+	}
 }
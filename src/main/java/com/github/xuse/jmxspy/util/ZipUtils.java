@@ -31,12 +31,18 @@ import java.util.zip.ZipEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.xuse.jmxspy.util.string.GlobMatcher;
+import com.github.xuse.jmxspy.util.string.GlobFilter;
+import com.github.xuse.jmxspy.util.string.RegexpUtils;
+import com.github.xuse.jmxspy.util.zip.ParallelVolumnOutputStream;
 import com.github.xuse.jmxspy.util.zip.TarEntry;
+import com.github.xuse.jmxspy.util.zip.TarFileWriter;
+import com.github.xuse.jmxspy.util.zip.TarIndex;
 import com.github.xuse.jmxspy.util.zip.TarInputStream;
 import com.github.xuse.jmxspy.util.zip.TarOutputStream;
-import com.github.xuse.jmxspy.util.zip.VolSwitchAbleOutputStream;
 import com.github.xuse.jmxspy.util.zip.VolumnChangeableInputStream;
-import com.github.xuse.jmxspy.util.zip.VolumnOutputStream;
+import com.github.xuse.jmxspy.util.zip.VolumnManifest;
+import com.github.xuse.jmxspy.util.zip.VolumnZipFile;
 import com.github.xuse.jmxspy.util.zip.ZipInputStream;
 import com.github.xuse.jmxspy.util.zip.ZipOutputStream;
 
@@ -58,7 +64,10 @@ public class ZipUtils {
 		ZipOutputStream.DEFAULT_NAME_ENCODING = "GB18030";
 		TarEntry.DEFAULT_NAME_ENCODING="GB18030";
 	}
-	public static int TarLongFileNameMode=0;
+	/**
+	 * 未指定EntryProcessor时，tar中长文件名的写法
+	 */
+	public static final int DEFAULT_TAR_LONGFILE_MODE = TarOutputStream.LONGFILE_POSIX;
 	
 	/**
 	 * 压缩为zip文件
@@ -82,7 +91,7 @@ public class ZipUtils {
 	 * @throws IOException
 	 */
 	public static File zip(File zipFile, List<File> inputFiles) throws IOException {
-		VolumnOutputStream vol = new VolumnOutputStream(new VolSwitchAbleOutputStream(zipFile,0));
+		ParallelVolumnOutputStream vol = new ParallelVolumnOutputStream(zipFile, 0);
 		ZipOutputStream out=new ZipOutputStream(vol);
 		for (File f : inputFiles) {
 			zip(out, f, null, null);
@@ -102,7 +111,8 @@ public class ZipUtils {
 	 */
 	public static File zip(File zipFile, EntryProcessor ep, File... inputFiles) throws IOException {
 		long size=ep==null?0:ep.getVolumnSize();
-		VolumnOutputStream vol = new VolumnOutputStream(new VolSwitchAbleOutputStream(zipFile,size));
+		ParallelVolumnOutputStream vol = new ParallelVolumnOutputStream(zipFile, size);
+		vol.setManifest(ep != null && ep.isCreateManifest());
 		ZipOutputStream out=new ZipOutputStream(vol);
 		for (File f : inputFiles) {
 			zip(out, f, null, ep);
@@ -194,7 +204,7 @@ public class ZipUtils {
 	 * @author Administrator
 	 */
 	public static File gzip(File source,File targetFile,long volumnSize) throws IOException {
-		VolumnOutputStream vol=new VolumnOutputStream(new VolSwitchAbleOutputStream(targetFile, volumnSize));
+		ParallelVolumnOutputStream vol = new ParallelVolumnOutputStream(targetFile, volumnSize);
 		GZIPOutputStream target=new GZIPOutputStream(vol);
 		IOUtils.copy(IOUtils.getInputStream(source), target, true);
 		return vol.getFirstVolFile();
@@ -225,6 +235,7 @@ public class ZipUtils {
 	 */
 	public static void unzip(InputStream ins, String unzipPath, String charSet, EntryProcessor cd) throws IOException {
 		ZipInputStream in = null;
+		byte[] doc = BufferPool.DEFAULT.borrow();
 		try {
 			in = new ZipInputStream(ins, charSet);
 			ZipEntry fEntry = null;
@@ -239,21 +250,20 @@ public class ZipUtils {
 						IOUtils.createFolder(fname);
 						continue;
 					}
-					byte[] doc = new byte[1024];
 					File output = new File(fname);
 					if (!output.getParentFile().exists()) {
 						output.getParentFile().mkdirs();
 					}
 					FileOutputStream out = new FileOutputStream(fname);
 					int n;
-					while ((n = in.read(doc, 0, 1024)) != -1)
+					while ((n = in.read(doc, 0, doc.length)) != -1)
 						out.write(doc, 0, n);
 					out.close();
 					out = null;
-					doc = null;
 				}
 			}
 		} finally {
+			BufferPool.DEFAULT.release(doc);
 			if (in != null)
 				in.close(); // 关闭输入流
 		}
@@ -295,7 +305,7 @@ public class ZipUtils {
 		}
 		BigDataBuffer bf=new BigDataBuffer();
 		TarOutputStream tarout=new TarOutputStream(bf);
-		tarout.setLongFileMode(TarLongFileNameMode);
+		tarout.setLongFileMode(getTarLongFileMode(ep));
 		try {
 			for(File file: inputFiles){
 				tar(tarout,file,"",ep);
@@ -307,7 +317,8 @@ public class ZipUtils {
 			tarout.close();
 		}
 		long size=ep==null?0:ep.getVolumnSize();
-		VolumnOutputStream vol=new VolumnOutputStream(new VolSwitchAbleOutputStream(zipFile, size));
+		ParallelVolumnOutputStream vol = new ParallelVolumnOutputStream(zipFile, size);
+		vol.setManifest(ep != null && ep.isCreateManifest());
 		GZIPOutputStream out=new GZIPOutputStream(vol);
 		IOUtils.copy(bf.getAsStream(), out, true);
 		bf.close();
@@ -342,24 +353,34 @@ public class ZipUtils {
 	}
 
 	/**
-	 * 压缩tar格式的压缩文件
+	 * 压缩tar格式的压缩文件，文件内容使用FileChannel.transferTo直接拷贝
 	 * @param tarFile
 	 * @param ep
 	 * @param inputFile
 	 * @throws IOException
 	 */
 	public static File tar(File tarFile,EntryProcessor ep,File... inputFile) throws IOException {
-		TarOutputStream out = new TarOutputStream(new FileOutputStream(tarFile));
-		out.setLongFileMode(TarLongFileNameMode);
+		return tar(tarFile, false, ep, inputFile);
+	}
+
+	/**
+	 * 压缩tar格式的压缩文件
+	 * @param tarFile
+	 * @param index 是否同时生成旁路索引文件(见{@link TarIndex})
+	 * @param ep
+	 * @param inputFile
+	 * @throws IOException
+	 */
+	public static File tar(File tarFile,boolean index,EntryProcessor ep,File... inputFile) throws IOException {
+		TarFileWriter out = new TarFileWriter(tarFile);
+		out.setLongFileMode(getTarLongFileMode(ep));
+		if (index)
+			out.setIndex(new TarIndex());
 		try {
 			for(File input: inputFile){
 				tar(out,input,"",ep);
 			}
-		} catch (IOException e) {
-			throw e;
 		} finally {
-			out.flush();
-			out.finish();
 			out.close();
 		}
 		return tarFile;
@@ -376,7 +397,7 @@ public class ZipUtils {
 	public static BigDataBuffer tarBuffer(EntryProcessor ep,File... inputFile) throws IOException {
 		BigDataBuffer result=new BigDataBuffer();
 		TarOutputStream out=new TarOutputStream(result);
-		out.setLongFileMode(TarLongFileNameMode);
+		out.setLongFileMode(getTarLongFileMode(ep));
 		try {
 			for(File input: inputFile){
 				tar(out,input,"",ep);
@@ -392,18 +413,64 @@ public class ZipUtils {
 	}
 	
 	
+	/*
+	 * tar目录遍历中每个条目的写法，TarOutputStream和TarFileWriter各有一种实现
+	 */
+	private interface TarEntryWriter {
+		void putDirectory(TarEntry entry) throws IOException;
+
+		void closeDirectory() throws IOException;
+
+		void putFile(TarEntry entry, File f) throws IOException;
+	}
+
+	private static void tar(final TarOutputStream out, File f, String base, EntryProcessor ep) throws IOException {
+		tar(new TarEntryWriter() {
+			public void putDirectory(TarEntry entry) throws IOException {
+				out.putNextEntry(entry);
+			}
+
+			public void closeDirectory() throws IOException {
+				out.closeEntry();
+			}
+
+			public void putFile(TarEntry entry, File f) throws IOException {
+				out.putNextEntry(entry); // 生成下一个压缩节点
+				FileInputStream in = new FileInputStream(f);
+				IOUtils.copy(in, out, false);
+				in.close();
+				out.closeEntry();
+			}
+		}, f, base, ep);
+	}
+
+	private static void tar(final TarFileWriter out, File f, String base, EntryProcessor ep) throws IOException {
+		tar(new TarEntryWriter() {
+			public void putDirectory(TarEntry entry) throws IOException {
+				out.putEntry(entry);
+			}
+
+			public void closeDirectory() {
+			}
+
+			public void putFile(TarEntry entry, File f) throws IOException {
+				out.putFile(entry, f);
+			}
+		}, f, base, ep);
+	}
+
 	/**
 	 * 压缩tar格式的压缩文件
 	 * 
 	 * @param f
 	 *            压缩文件
 	 * @param out
-	 *            输出文件
+	 *            输出
 	 * @param base
 	 *            结束标识
 	 * @throws IOException
 	 */
-	private static void tar(TarOutputStream out, File f,String base,EntryProcessor ep) throws IOException {
+	private static void tar(TarEntryWriter out, File f,String base,EntryProcessor ep) throws IOException {
 		Assert.exist(f);
 		if (StringUtils.isNotEmpty(base) && !base.endsWith("/"))
 			base = base.concat("/");
@@ -412,13 +479,13 @@ public class ZipUtils {
 			base = (ep == null) ? base : ep.getZippedPath(f, base);
 			if (base != null) {
 //				LogUtil.debug("folder to Tar:" +  base);
-				out.putNextEntry(new TarEntry(base));
+				out.putDirectory(new TarEntry(base));
 				for (File file : f.listFiles()) {
 					tar(out, file, base, ep);
 					if (ep!=null && ep.breakProcess())
 						break;
 				}
-				out.closeEntry();
+				out.closeDirectory();
 			}
 		} else {
 			String entryName = StringUtils.toString(base) + f.getName();
@@ -427,16 +494,15 @@ public class ZipUtils {
 				TarEntry entry=new TarEntry(entryName);
 				entry.setSize(f.length());
 //				LogUtil.debug("adding to Tar:" + entryName+" "+f.length());
-				out.putNextEntry(entry); // 生成下一个压缩节点
-				FileInputStream in = new FileInputStream(f); // 
-				IOUtils.copy(in, out, false);
-				in.close();
-				out.closeEntry();
+				out.putFile(entry, f);
 			}
 		}
 	}
 	
-	
+	private static int getTarLongFileMode(EntryProcessor ep) {
+		return ep == null ? DEFAULT_TAR_LONGFILE_MODE : ep.getTarLongFileMode();
+	}
+
 	/**
 	 * 解压tar.gz压缩包
 	 * 
@@ -557,6 +623,87 @@ public class ZipUtils {
 		}
 	}
 
+	/**
+	 * 多线程解压zip文件。分卷文件无法使用中央目录，自动退化为单线程解压。
+	 *
+	 * @param file      压缩包
+	 * @param unzipPath 解压路径
+	 * @param charset   压缩包内的文件名编码(可为null)
+	 * @param cd        压缩处理器(可为null)
+	 * @param threads   工作线程数，小于等于0时使用CPU核数
+	 * @return
+	 */
+	public static boolean unzipParallel(File file, String unzipPath, String charset, EntryProcessor cd, int threads) {
+		if (isVolumnFile(file)) {
+			return unzip(file, unzipPath, charset, cd);
+		}
+		try {
+			new ParallelExtractor(threads).unzip(file, unzipPath, charset, cd);
+			return true;
+		} catch (IOException e) {
+			log.error("", e);
+			return false;
+		}
+	}
+
+	/**
+	 * 多线程解压tar文件。分卷文件自动退化为单线程解压。
+	 *
+	 * @param file      压缩包
+	 * @param unzipPath 解压路径
+	 * @param cd        压缩处理器(可为null)
+	 * @param threads   工作线程数，小于等于0时使用CPU核数
+	 * @return
+	 */
+	public static boolean untarParallel(File file, String unzipPath, EntryProcessor cd, int threads) {
+		if (isVolumnFile(file)) {
+			return untar(file, unzipPath, cd);
+		}
+		try {
+			new ParallelExtractor(threads).untar(file, unzipPath, cd);
+			return true;
+		} catch (IOException e) {
+			log.error("", e);
+			return false;
+		}
+	}
+
+	private static boolean isVolumnFile(File file) {
+		return RegexpUtils.matches(file.getName(), VolumnChangeableInputStream.VOLUMN);
+	}
+
+	/**
+	 * 从zip文件中解压单个条目。通过中央目录直接定位，分卷时只读取条目所在的分卷。
+	 *
+	 * @param zipFile   zip文件，分卷时为第一卷
+	 * @param charSet   文件名编码，为null时使用默认编码
+	 * @param entryName 条目名
+	 * @param target    解压后的文件
+	 * @return 条目不存在返回false
+	 * @throws IOException
+	 */
+	public static boolean unzipEntry(File zipFile, String charSet, String entryName, File target) throws IOException {
+		VolumnZipFile zip = new VolumnZipFile(zipFile, charSet);
+		try {
+			return zip.extract(entryName, target);
+		} finally {
+			zip.close();
+		}
+	}
+
+	/**
+	 * 从未压缩的tar文件中解压单个条目。有旁路索引文件时直接定位，否则扫描条目头。
+	 *
+	 * @param tarFile   tar文件(不支持分卷)
+	 * @param entryName 条目名
+	 * @param target    解压后的文件
+	 * @return 条目不存在返回false
+	 * @throws IOException
+	 */
+	public static boolean untarEntry(File tarFile, String entryName, File target) throws IOException {
+		return TarIndex.of(tarFile).extract(tarFile, entryName, target);
+	}
+
 	/**
 	 * 得到tar压缩文件的摘要信息
 	 * @param file
@@ -564,6 +711,19 @@ public class ZipUtils {
 	 */
 	public static ArchiveSummary getTarSummary(File file) {
 		SummaryCollector sc = new SummaryCollector();
+		if (!isVolumnFile(file)) {
+			try {
+				TarIndex index = TarIndex.load(file);
+				if (index != null) {
+					for (TarIndex.Item item : index.getItems()) {
+						sc.getExtractName(item.getName(), item.getSize(), item.getSize());
+					}
+					return sc.getSummary();
+				}
+			} catch (IOException e) {
+				log.warn("Tar index of {} is unreadable, scanning the archive.", file, e);
+			}
+		}
 		untar(file, null, sc);
 		return sc.getSummary();
 	}
@@ -688,6 +848,21 @@ public class ZipUtils {
 		protected long getVolumnSize(){
 			return 0;
 		}
+		/**
+		 * 是否在输出文件旁写出分卷清单(各分卷的大小和CRC32)，用于解压前校验
+		 * @see VolumnManifest
+		 */
+		protected boolean isCreateManifest(){
+			return false;
+		}
+		/**
+		 * 返回tar中长文件名(超过100字节)的写法
+		 * @return {@link TarOutputStream#LONGFILE_POSIX}(默认，PAX扩展头), {@link TarOutputStream#LONGFILE_GNU},
+		 * {@link TarOutputStream#LONGFILE_TRUNCATE}或{@link TarOutputStream#LONGFILE_ERROR}
+		 */
+		protected int getTarLongFileMode(){
+			return DEFAULT_TAR_LONGFILE_MODE;
+		}
 		/**
 		 * 当一个文件将被压缩前调用，返回文件在压缩包中的路径
 		 * @param source   源文件
@@ -705,4 +880,41 @@ public class ZipUtils {
 			return false;
 		}
 	}
+
+	/**
+	 * 按通配表达式(语法同{@link GlobMatcher})过滤压缩/解压的条目，匹配的是压缩包中的路径，见{@link GlobFilter}。
+	 * 目录只按excludes过滤，以免include了"*.class"却跳过了其所在的目录。
+	 * 需要定制其他行为时可以继承此类。
+	 */
+	public static class PatternEntryProcessor extends EntryProcessor {
+		private final GlobFilter filter;
+
+		/**
+		 * @param includes 要处理的条目，为空表示全部
+		 * @param excludes 要跳过的条目，优先于includes
+		 */
+		public PatternEntryProcessor(String[] includes, String[] excludes) {
+			this.filter = new GlobFilter(includes, excludes);
+		}
+
+		/**
+		 * 条目是否需要处理
+		 * @param path 压缩包中的路径，目录以/结尾
+		 */
+		public boolean accept(String path) {
+			if (filter.isExcluded(path))
+				return false;
+			return path.endsWith("/") || filter.isIncluded(path);
+		}
+
+		@Override
+		protected String getExtractName(String entryName, long packedSize, long unpackedSize) {
+			return accept(entryName) ? entryName : null;
+		}
+
+		@Override
+		protected String getZippedPath(File source, String zippedPath) {
+			return accept(zippedPath) ? zippedPath : null;
+		}
+	}
 }
@@ -0,0 +1,206 @@
+package com.github.xuse.jmxspy.util.collection;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * 压缩存储的long序列，只能追加。适合长期采集的时间戳、计数器、文件大小等序列。
+ * <p>
+ * 序列按固定个数分块，块内每个值存储和前一个值的差，差值经过zigzag编码后用变长字节(varint)存储。
+ * 单调递增且间隔较小的序列(例如按秒采样的时间戳)每个值约占1个字节。
+ * 写满的块裁剪到实际长度后单独存放，扩容时不需要复制已有数据。
+ * <p>
+ * 顺序遍历使用{@link #iterator()}；{@link #get(int)}从所在块的开头解码，开销和块大小成正比。非线程安全。
+ * @author Joey
+ *
+ */
+public final class CompressedLongSequence {
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+
+	private final int chunkSize;
+	/**
+	 * 已写满的块
+	 */
+	private byte[][] chunks = new byte[16][];
+	private int chunkCount;
+	/**
+	 * 当前正在写入的块
+	 */
+	private final byte[] current;
+	private int currentLen;
+	private long last;
+	private int size;
+
+	/**
+	 * 顺序遍历器
+	 */
+	public final class Cursor {
+		private int index;
+		private byte[] chunk;
+		private int pos;
+		private long value;
+
+		private Cursor() {
+		}
+
+		public boolean hasNext() {
+			return index < size;
+		}
+
+		public long next() {
+			if (index >= size)
+				throw new NoSuchElementException();
+			if (index % chunkSize == 0) {
+				int c = index / chunkSize;
+				chunk = c < chunkCount ? chunks[c] : current;
+				pos = 0;
+				value = 0;
+			}
+			long delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = chunk[pos++];
+				delta |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			value += (delta >>> 1) ^ -(delta & 1);
+			index++;
+			return value;
+		}
+	}
+
+	public CompressedLongSequence() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * 构造
+	 * @param chunkSize 每块的元素个数。越大压缩率越高，随机访问越慢。
+	 */
+	public CompressedLongSequence(int chunkSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+		this.chunkSize = chunkSize;
+		this.current = new byte[chunkSize * 10];
+	}
+
+	/**
+	 * 追加一个值
+	 * @param value
+	 */
+	public void add(long value) {
+		if (size > 0 && size % chunkSize == 0) {
+			sealCurrent();
+		}
+		long delta = value - last;
+		long zigzag = (delta << 1) ^ (delta >> 63);
+		byte[] buf = current;
+		int pos = currentLen;
+		while ((zigzag & ~0x7FL) != 0) {
+			buf[pos++] = (byte) ((zigzag & 0x7F) | 0x80);
+			zigzag >>>= 7;
+		}
+		buf[pos++] = (byte) zigzag;
+		currentLen = pos;
+		last = value;
+		size++;
+	}
+
+	/**
+	 * 获得指定位置的值
+	 * @param index
+	 * @return
+	 */
+	public long get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		int c = index / chunkSize;
+		byte[] chunk = c < chunkCount ? chunks[c] : current;
+		int n = index - c * chunkSize;
+		int pos = 0;
+		long value = 0;
+		for (int i = 0; i <= n; i++) {
+			long delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = chunk[pos++];
+				delta |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			value += (delta >>> 1) ^ -(delta & 1);
+		}
+		return value;
+	}
+
+	/**
+	 * @return 最后一个值
+	 */
+	public long getLast() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return last;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public Cursor iterator() {
+		return new Cursor();
+	}
+
+	/**
+	 * 解压为LongList
+	 * @return
+	 */
+	public LongList toLongList() {
+		LongList list = new LongList(Math.max(size, 1));
+		Cursor cursor = iterator();
+		while (cursor.hasNext()) {
+			list.add(cursor.next());
+		}
+		return list;
+	}
+
+	/**
+	 * @return 已使用的数据字节数(不含对象头)
+	 */
+	public long getEncodedBytes() {
+		long total = currentLen;
+		for (int i = 0; i < chunkCount; i++) {
+			total += chunks[i].length;
+		}
+		return total;
+	}
+
+	public void clear() {
+		Arrays.fill(chunks, 0, chunkCount, null);
+		chunkCount = 0;
+		currentLen = 0;
+		last = 0;
+		size = 0;
+	}
+
+	/*
+	 * 当前块写满，裁剪后存入已满块列表，每块从0开始重新计算差值
+	 */
+	private void sealCurrent() {
+		if (chunkCount == chunks.length) {
+			chunks = Arrays.copyOf(chunks, chunkCount * 2);
+		}
+		chunks[chunkCount++] = Arrays.copyOf(current, currentLen);
+		currentLen = 0;
+		last = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "CompressedLongSequence[size:" + size + ", bytes:" + getEncodedBytes() + "]";
+	}
+}
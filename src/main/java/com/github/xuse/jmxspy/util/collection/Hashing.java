@@ -0,0 +1,57 @@
+package com.github.xuse.jmxspy.util.collection;
+
+/**
+ * 基本类型哈希表的公共算法
+ * @author Joey
+ *
+ */
+final class Hashing {
+	static final float DEFAULT_LOAD_FACTOR = 0.75f;
+	static final int DEFAULT_EXPECTED_SIZE = 16;
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private Hashing() {
+	}
+
+	/**
+	 * 打散int的哈希值，避免连续的key落到连续的槽位上
+	 */
+	static int mix(int x) {
+		int h = x * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * 打散long的哈希值
+	 */
+	static int mix(long x) {
+		long h = x * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		return (int) (h ^ (h >>> 16));
+	}
+
+	/**
+	 * 根据预计元素个数和负载因子计算数组大小(2的幂)
+	 */
+	static int arraySize(int expected, float loadFactor) {
+		long s = (long) Math.ceil(Math.max(expected, 1) / loadFactor);
+		if (s > MAX_CAPACITY)
+			throw new IllegalArgumentException("too large: " + expected);
+		int n = 2;
+		while (n < s)
+			n <<= 1;
+		return n;
+	}
+
+	/**
+	 * 扩容阈值，保证数组中至少有一个空槽
+	 */
+	static int threshold(int capacity, float loadFactor) {
+		return Math.min(capacity - 1, (int) Math.ceil(capacity * loadFactor));
+	}
+
+	static void checkLoadFactor(float loadFactor) {
+		if (!(loadFactor > 0 && loadFactor < 1))
+			throw new IllegalArgumentException("load factor must be in (0, 1): " + loadFactor);
+	}
+}
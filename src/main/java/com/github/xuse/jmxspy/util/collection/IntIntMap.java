@@ -0,0 +1,271 @@
+package com.github.xuse.jmxspy.util.collection;
+
+import java.util.Arrays;
+
+/**
+ * key和value都是int的哈希表。采用开放寻址(线性探测)，免去了装箱和拆箱，也没有Entry对象。
+ * 适用于以int值为key的计数和统计。
+ * <p>
+ * key为0的条目单独存放，数组中的0表示空槽。非线程安全。
+ * @author Joey
+ *
+ */
+public final class IntIntMap {
+	private int[] keys;
+	private int[] values;
+	private final float loadFactor;
+	private int mask;
+	private int threshold;
+	/**
+	 * 数组中的条目数，不含key为0的条目
+	 */
+	private int assigned;
+	private boolean hasZeroKey;
+	private int zeroValue;
+
+	/**
+	 * 遍历访问器
+	 */
+	public interface Visitor {
+		void visit(int key, int value);
+	}
+
+	public IntIntMap() {
+		this(Hashing.DEFAULT_EXPECTED_SIZE, Hashing.DEFAULT_LOAD_FACTOR);
+	}
+
+	public IntIntMap(int expectedSize) {
+		this(expectedSize, Hashing.DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * 构造
+	 * @param expectedSize 预计的元素个数
+	 * @param loadFactor 负载因子，(0,1)之间
+	 */
+	public IntIntMap(int expectedSize, float loadFactor) {
+		Hashing.checkLoadFactor(loadFactor);
+		this.loadFactor = loadFactor;
+		allocate(Hashing.arraySize(expectedSize, loadFactor));
+	}
+
+	public int size() {
+		return hasZeroKey ? assigned + 1 : assigned;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean containsKey(int key) {
+		if (key == 0)
+			return hasZeroKey;
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * 获取值
+	 * @param key
+	 * @return 不存在时返回0
+	 */
+	public int get(int key) {
+		return get(key, 0);
+	}
+
+	/**
+	 * 获取值
+	 * @param key
+	 * @param defaultValue 不存在时返回的值
+	 * @return
+	 */
+	public int get(int key, int defaultValue) {
+		if (key == 0)
+			return hasZeroKey ? zeroValue : defaultValue;
+		int i = indexOf(key);
+		return i < 0 ? defaultValue : values[i];
+	}
+
+	/**
+	 * 放入值
+	 * @param key
+	 * @param value
+	 * @return 原来的值，不存在时返回0
+	 */
+	public int put(int key, int value) {
+		if (key == 0) {
+			int old = zeroValue;
+			zeroValue = value;
+			hasZeroKey = true;
+			return old;
+		}
+		int i = Hashing.mix(key) & mask;
+		int k;
+		while ((k = keys[i]) != 0) {
+			if (k == key) {
+				int old = values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++assigned >= threshold)
+			rehash(keys.length << 1);
+		return 0;
+	}
+
+	/**
+	 * 累加值，key不存在时视为0
+	 * @param key
+	 * @param delta
+	 * @return 累加后的值
+	 */
+	public int addTo(int key, int delta) {
+		if (key == 0) {
+			hasZeroKey = true;
+			return zeroValue += delta;
+		}
+		int i = Hashing.mix(key) & mask;
+		int k;
+		while ((k = keys[i]) != 0) {
+			if (k == key)
+				return values[i] += delta;
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = delta;
+		if (++assigned >= threshold)
+			rehash(keys.length << 1);
+		return delta;
+	}
+
+	/**
+	 * 删除
+	 * @param key
+	 * @return 删除的值，不存在时返回0
+	 */
+	public int remove(int key) {
+		if (key == 0) {
+			int old = zeroValue;
+			hasZeroKey = false;
+			zeroValue = 0;
+			return old;
+		}
+		int i = indexOf(key);
+		if (i < 0)
+			return 0;
+		int old = values[i];
+		shiftKeys(i);
+		assigned--;
+		return old;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		assigned = 0;
+		hasZeroKey = false;
+		zeroValue = 0;
+	}
+
+	/**
+	 * @return 所有的key，顺序不确定
+	 */
+	public int[] keys() {
+		int[] result = new int[size()];
+		int n = 0;
+		if (hasZeroKey)
+			result[n++] = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0)
+				result[n++] = keys[i];
+		}
+		return result;
+	}
+
+	/**
+	 * 遍历所有条目，顺序不确定。遍历过程中不可修改。
+	 * @param visitor
+	 */
+	public void forEach(Visitor visitor) {
+		if (hasZeroKey)
+			visitor.visit(0, zeroValue);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0)
+				visitor.visit(keys[i], values[i]);
+		}
+	}
+
+	private int indexOf(int key) {
+		int i = Hashing.mix(key) & mask;
+		int k;
+		while ((k = keys[i]) != 0) {
+			if (k == key)
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/*
+	 * 删除后将后续冲突的条目前移，保持探测链连续
+	 */
+	private void shiftKeys(int pos) {
+		int last;
+		int k;
+		while (true) {
+			pos = ((last = pos) + 1) & mask;
+			while (true) {
+				if ((k = keys[pos]) == 0) {
+					keys[last] = 0;
+					return;
+				}
+				int slot = Hashing.mix(k) & mask;
+				if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos)
+					break;
+				pos = (pos + 1) & mask;
+			}
+			keys[last] = k;
+			values[last] = values[pos];
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+		this.threshold = Hashing.threshold(capacity, loadFactor);
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int j = 0; j < oldKeys.length; j++) {
+			int k = oldKeys[j];
+			if (k != 0) {
+				int i = Hashing.mix(k) & mask;
+				while (keys[i] != 0)
+					i = (i + 1) & mask;
+				keys[i] = k;
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append('{');
+		forEach(new Visitor() {
+			public void visit(int key, int value) {
+				if (sb.length() > 1)
+					sb.append(", ");
+				sb.append(key).append('=').append(value);
+			}
+		});
+		sb.append("}size:").append(size());
+		return sb.toString();
+	}
+
+}
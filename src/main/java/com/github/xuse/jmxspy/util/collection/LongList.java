@@ -14,6 +14,10 @@ import java.util.List;
 public final class LongList {
 	private long[] list;
 	private int size=0;
+	/**
+	 * 集合运算时参数的元素个数超过此值，改用哈希查找代替逐个遍历
+	 */
+	private static final int HASH_THRESHOLD=16;
 
 	
 	public LongList(long[] data){
@@ -68,6 +72,9 @@ public final class LongList {
      * @see    #contains(Object)
      */
     public boolean containsAll(LongList c){
+    	if(size>HASH_THRESHOLD && c.size>HASH_THRESHOLD){
+    		return containsAll(new LongSet(list,size),c.list,c.size);
+    	}
     	for(int i=0;i<c.size;i++){
     		long key=c.list[i];
     		if(!contains(key)){
@@ -93,6 +100,9 @@ public final class LongList {
      * @see #contains(Object)
      */
     public boolean containsAll(long[] c){
+    	if(size>HASH_THRESHOLD && c.length>HASH_THRESHOLD){
+    		return containsAll(new LongSet(list,size),c,c.length);
+    	}
     	for(int i=0;i<c.length;i++){
     		long key=c[i];
     		if(!contains(key)){
@@ -101,6 +111,15 @@ public final class LongList {
     	}
     	return true;
     }
+    
+    private static boolean containsAll(LongSet set,long[] c,int len){
+    	for(int i=0;i<len;i++){
+    		if(!set.contains(c[i])){
+    			return false;
+    		}
+    	}
+    	return true;
+    }
 
     /**
      * Removes all of the elements from this collection (optional operation).
@@ -274,11 +293,29 @@ public final class LongList {
      * @see #contains(Object)
      */
     public boolean removeAll(LongList c){
-    	boolean b=false;
-    	for(int i=0;i<c.size;i++){
-    		b |= remove(c.list[i]);
+    	if(c.size==0)return false;
+    	int n=0;
+    	if(c.size>HASH_THRESHOLD){
+    		LongSet set=new LongSet(c.list,c.size);
+    		for(int i=0;i<size;i++){
+    			long value=list[i];
+    			if(!set.contains(value)){
+    				list[n++]=value;
+    			}
+    		}
+    	}else{
+    		for(int i=0;i<size;i++){
+    			long value=list[i];
+    			if(!c.contains(value)){
+    				list[n++]=value;
+    			}
+    		}
     	}
-    	return b;
+    	if(n==size){
+    		return false;
+    	}
+    	size=n;
+    	return true;
     }
 
 
@@ -343,8 +380,10 @@ public final class LongList {
      */
     public boolean removeByIndex(int index) {
     	if(index<0 || index>=size)throw new IndexOutOfBoundsException(String.valueOf(index));
-    	int moveLen=size-index;
-    	System.arraycopy(list, index+1, list, index, moveLen);
+    	int moveLen=size-index-1;
+    	if(moveLen>0){
+    		System.arraycopy(list, index+1, list, index, moveLen);
+    	}
     	size--;
     	return true;
     }
@@ -448,29 +487,171 @@ public final class LongList {
   * @see #remove(Object)
   * @see #contains(Object)
   */
- public boolean retainAll(LongList c){
-	LongList result=new LongList(Math.min(size, c.size));
- 	for(int i=0;i<size;i++){
- 		long value=list[i];
- 		if(c.contains(value)){
- 			result.add(value);
- 		}
- 	}
- 	if(size==result.size){
- 		return false;
- 	}
- 	this.size=result.size;
- 	this.list=result.list;
- 	return true;
- }
+    public boolean retainAll(LongList c){
+    	int n=0;
+    	if(c.size>HASH_THRESHOLD){
+    		LongSet set=new LongSet(c.list,c.size);
+    		for(int i=0;i<size;i++){
+    			long value=list[i];
+    			if(set.contains(value)){
+    				list[n++]=value;
+    			}
+    		}
+    	}else{
+    		for(int i=0;i<size;i++){
+    			long value=list[i];
+    			if(c.contains(value)){
+    				list[n++]=value;
+    			}
+    		}
+    	}
+    	if(n==size){
+    		return false;
+    	}
+    	size=n;
+    	return true;
+    }
+    
     
+    // Bulk Operations
+
+    /**
+     * 升序排序。元素较多时使用基数排序。
+     */
+    public void sort(){
+    	RadixSort.sort(list, size);
+    }
+
+    /**
+     * 在已排序的列表中二分查找
+     * @param key
+     * @return 元素的序号，不存在时返回(-(插入点) - 1)
+     * @see Arrays#binarySearch(long[], int, int, long)
+     */
+    public int binarySearch(long key){
+    	return Arrays.binarySearch(list, 0, size, key);
+    }
+
+    /**
+     * 在已排序的列表上去掉重复元素，不重新分配数组
+     * @return true if any element removed
+     */
+    public boolean distinctSorted(){
+    	if(size<2)return false;
+    	long[] a=list;
+    	int n=1;
+    	for(int i=1;i<size;i++){
+    		if(a[i]!=a[n-1]){
+    			a[n++]=a[i];
+    		}
+    	}
+    	if(n==size)return false;
+    	size=n;
+    	return true;
+    }
+
+    /**
+     * 合并两个已排序的列表，结果仍然有序(保留重复元素)
+     * @param a
+     * @param b
+     * @return 新的列表
+     */
+    public static LongList mergeSorted(LongList a, LongList b){
+    	LongList r=new LongList(Math.max(a.size+b.size, 1));
+    	long[] x=a.list,y=b.list,z=r.list;
+    	int i=0,j=0,k=0;
+    	while(i<a.size && j<b.size){
+    		z[k++]= x[i]<=y[j] ? x[i++] : y[j++];
+    	}
+    	while(i<a.size){
+    		z[k++]=x[i++];
+    	}
+    	while(j<b.size){
+    		z[k++]=y[j++];
+    	}
+    	r.size=k;
+    	return r;
+    }
+
+    /**
+     * @return 所有元素的和
+     */
+    public long sum(){
+    	long[] a=list;
+    	int n=size;
+    	long sum=0;
+    	for(int i=0;i<n;i++){
+    		sum+=a[i];
+    	}
+    	return sum;
+    }
+
+    /**
+     * 求区间[fromIndex, toIndex)的元素和
+     * @param fromIndex
+     * @param toIndex
+     * @return
+     */
+    public long sum(int fromIndex, int toIndex){
+    	if(fromIndex<0 || toIndex>size || fromIndex>toIndex)throw new IndexOutOfBoundsException(fromIndex+"-"+toIndex);
+    	long[] a=list;
+    	long sum=0;
+    	for(int i=fromIndex;i<toIndex;i++){
+    		sum+=a[i];
+    	}
+    	return sum;
+    }
+
+    /**
+     * 前缀和。结果的长度为size+1，result[i]为前i个元素的和，区间[i,j)的和为result[j]-result[i]。
+     * @return
+     */
+    public long[] prefixSum(){
+    	long[] a=list;
+    	int n=size;
+    	long[] result=new long[n+1];
+    	long sum=0;
+    	for(int i=0;i<n;i++){
+    		sum+=a[i];
+    		result[i+1]=sum;
+    	}
+    	return result;
+    }
+
+    /**
+     * Get the maximum element in list.
+     * @return {@link Long#MIN_VALUE} if there's no element in list.
+     */
+    public long getMax(){
+    	long[] a=list;
+    	int n=size;
+    	long max=Long.MIN_VALUE;
+    	for(int i=0;i<n;i++){
+    		max=Math.max(max, a[i]);
+    	}
+    	return max;
+    }
+
+    /**
+     * Get the minimum element in list.
+     * @return {@link Long#MAX_VALUE} if there's no element in list.
+     */
+    public long getMin(){
+    	long[] a=list;
+    	int n=size;
+    	long min=Long.MAX_VALUE;
+    	for(int i=0;i<n;i++){
+    		min=Math.min(min, a[i]);
+    	}
+    	return min;
+    }
     
     /*
      * 数组扩容
      */
     private void ensureCapacity(int i) {
 		if(list.length<i){
-			int newLen=list.length*2;
+			int newLen=Math.max(list.length*2, 16);
 			while(newLen<i){
 				newLen*=2;
 			}
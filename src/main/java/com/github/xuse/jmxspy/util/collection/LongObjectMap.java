@@ -0,0 +1,270 @@
+package com.github.xuse.jmxspy.util.collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * key为long的哈希表。采用开放寻址(线性探测)，key不需要装箱，也没有Entry对象。
+ * 适用于以线程ID等long值为key缓存对象。
+ * <p>
+ * key为0的条目单独存放，数组中的0表示空槽。value不能为null。非线程安全。
+ * @author Joey
+ *
+ * @param <V>
+ */
+public final class LongObjectMap<V> {
+	private long[] keys;
+	private Object[] values;
+	private final float loadFactor;
+	private int mask;
+	private int threshold;
+	/**
+	 * 数组中的条目数，不含key为0的条目
+	 */
+	private int assigned;
+	private V zeroValue;
+
+	/**
+	 * 遍历访问器
+	 */
+	public interface Visitor<V> {
+		void visit(long key, V value);
+	}
+
+	public LongObjectMap() {
+		this(Hashing.DEFAULT_EXPECTED_SIZE, Hashing.DEFAULT_LOAD_FACTOR);
+	}
+
+	public LongObjectMap(int expectedSize) {
+		this(expectedSize, Hashing.DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * 构造
+	 * @param expectedSize 预计的元素个数
+	 * @param loadFactor 负载因子，(0,1)之间
+	 */
+	public LongObjectMap(int expectedSize, float loadFactor) {
+		Hashing.checkLoadFactor(loadFactor);
+		this.loadFactor = loadFactor;
+		allocate(Hashing.arraySize(expectedSize, loadFactor));
+	}
+
+	public int size() {
+		return zeroValue == null ? assigned : assigned + 1;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean containsKey(long key) {
+		if (key == 0)
+			return zeroValue != null;
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * 获取值
+	 * @param key
+	 * @return 不存在时返回null
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		if (key == 0)
+			return zeroValue;
+		int i = indexOf(key);
+		return i < 0 ? null : (V) values[i];
+	}
+
+	/**
+	 * 放入值
+	 * @param key
+	 * @param value 不能为null
+	 * @return 原来的值，不存在时返回null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null)
+			throw new NullPointerException("value");
+		if (key == 0) {
+			V old = zeroValue;
+			zeroValue = value;
+			return old;
+		}
+		int i = Hashing.mix(key) & mask;
+		long k;
+		while ((k = keys[i]) != 0) {
+			if (k == key) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++assigned >= threshold)
+			rehash(keys.length << 1);
+		return null;
+	}
+
+	/**
+	 * key不存在时才放入值
+	 * @param key
+	 * @param value 不能为null
+	 * @return 已经存在的值，不存在时放入并返回null
+	 */
+	public V putIfAbsent(long key, V value) {
+		V old = get(key);
+		if (old == null)
+			put(key, value);
+		return old;
+	}
+
+	/**
+	 * 删除
+	 * @param key
+	 * @return 删除的值，不存在时返回null
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		if (key == 0) {
+			V old = zeroValue;
+			zeroValue = null;
+			return old;
+		}
+		int i = indexOf(key);
+		if (i < 0)
+			return null;
+		V old = (V) values[i];
+		shiftKeys(i);
+		assigned--;
+		return old;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, null);
+		assigned = 0;
+		zeroValue = null;
+	}
+
+	/**
+	 * @return 所有的key，顺序不确定
+	 */
+	public long[] keys() {
+		long[] result = new long[size()];
+		int n = 0;
+		if (zeroValue != null)
+			result[n++] = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0)
+				result[n++] = keys[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @return 所有的值，顺序和{@link #keys()}一致
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> result = new ArrayList<V>(size());
+		if (zeroValue != null)
+			result.add(zeroValue);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0)
+				result.add((V) values[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * 遍历所有条目，顺序不确定。遍历过程中不可修改。
+	 * @param visitor
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(Visitor<? super V> visitor) {
+		if (zeroValue != null)
+			visitor.visit(0, zeroValue);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0)
+				visitor.visit(keys[i], (V) values[i]);
+		}
+	}
+
+	private int indexOf(long key) {
+		int i = Hashing.mix(key) & mask;
+		long k;
+		while ((k = keys[i]) != 0) {
+			if (k == key)
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/*
+	 * 删除后将后续冲突的条目前移，保持探测链连续
+	 */
+	private void shiftKeys(int pos) {
+		int last;
+		long k;
+		while (true) {
+			pos = ((last = pos) + 1) & mask;
+			while (true) {
+				if ((k = keys[pos]) == 0) {
+					keys[last] = 0;
+					values[last] = null;
+					return;
+				}
+				int slot = Hashing.mix(k) & mask;
+				if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos)
+					break;
+				pos = (pos + 1) & mask;
+			}
+			keys[last] = k;
+			values[last] = values[pos];
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+		this.threshold = Hashing.threshold(capacity, loadFactor);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		for (int j = 0; j < oldKeys.length; j++) {
+			long k = oldKeys[j];
+			if (k != 0) {
+				int i = Hashing.mix(k) & mask;
+				while (keys[i] != 0)
+					i = (i + 1) & mask;
+				keys[i] = k;
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append('{');
+		forEach(new Visitor<V>() {
+			public void visit(long key, V value) {
+				if (sb.length() > 1)
+					sb.append(", ");
+				sb.append(key).append('=').append(value);
+			}
+		});
+		sb.append("}size:").append(size());
+		return sb.toString();
+	}
+}
@@ -0,0 +1,199 @@
+package com.github.xuse.jmxspy.util.collection;
+
+import java.util.Arrays;
+
+/**
+ * long的哈希集合。采用开放寻址(线性探测)，免去了装箱和拆箱。
+ * <p>
+ * 0单独记录，数组中的0表示空槽。非线程安全。
+ * @author Joey
+ *
+ */
+public final class LongSet {
+	private long[] keys;
+	private final float loadFactor;
+	private int mask;
+	private int threshold;
+	/**
+	 * 数组中的元素个数，不含0
+	 */
+	private int assigned;
+	private boolean hasZero;
+
+	public LongSet() {
+		this(Hashing.DEFAULT_EXPECTED_SIZE, Hashing.DEFAULT_LOAD_FACTOR);
+	}
+
+	public LongSet(int expectedSize) {
+		this(expectedSize, Hashing.DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * 构造
+	 * @param expectedSize 预计的元素个数
+	 * @param loadFactor 负载因子，(0,1)之间
+	 */
+	public LongSet(int expectedSize, float loadFactor) {
+		Hashing.checkLoadFactor(loadFactor);
+		this.loadFactor = loadFactor;
+		allocate(Hashing.arraySize(expectedSize, loadFactor));
+	}
+
+	/**
+	 * 用数组中的前len个元素构造
+	 * @param data
+	 * @param len
+	 */
+	public LongSet(long[] data, int len) {
+		this(len, Hashing.DEFAULT_LOAD_FACTOR);
+		for (int i = 0; i < len; i++) {
+			add(data[i]);
+		}
+	}
+
+	public int size() {
+		return hasZero ? assigned + 1 : assigned;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean contains(long key) {
+		if (key == 0)
+			return hasZero;
+		int i = Hashing.mix(key) & mask;
+		long k;
+		while ((k = keys[i]) != 0) {
+			if (k == key)
+				return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * 加入元素
+	 * @param key
+	 * @return true if the element not exists before.
+	 */
+	public boolean add(long key) {
+		if (key == 0) {
+			if (hasZero)
+				return false;
+			return hasZero = true;
+		}
+		int i = Hashing.mix(key) & mask;
+		long k;
+		while ((k = keys[i]) != 0) {
+			if (k == key)
+				return false;
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		if (++assigned >= threshold)
+			rehash(keys.length << 1);
+		return true;
+	}
+
+	/**
+	 * 删除元素
+	 * @param key
+	 * @return true if a element removed
+	 */
+	public boolean remove(long key) {
+		if (key == 0) {
+			boolean old = hasZero;
+			hasZero = false;
+			return old;
+		}
+		int i = Hashing.mix(key) & mask;
+		long k;
+		while ((k = keys[i]) != 0) {
+			if (k == key) {
+				shiftKeys(i);
+				assigned--;
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		assigned = 0;
+		hasZero = false;
+	}
+
+	/**
+	 * @return 所有元素，顺序不确定
+	 */
+	public long[] toArray() {
+		long[] result = new long[size()];
+		int n = 0;
+		if (hasZero)
+			result[n++] = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0)
+				result[n++] = keys[i];
+		}
+		return result;
+	}
+
+	/*
+	 * 删除后将后续冲突的元素前移，保持探测链连续
+	 */
+	private void shiftKeys(int pos) {
+		int last;
+		long k;
+		while (true) {
+			pos = ((last = pos) + 1) & mask;
+			while (true) {
+				if ((k = keys[pos]) == 0) {
+					keys[last] = 0;
+					return;
+				}
+				int slot = Hashing.mix(k) & mask;
+				if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos)
+					break;
+				pos = (pos + 1) & mask;
+			}
+			keys[last] = k;
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.mask = capacity - 1;
+		this.threshold = Hashing.threshold(capacity, loadFactor);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		allocate(capacity);
+		for (int j = 0; j < oldKeys.length; j++) {
+			long k = oldKeys[j];
+			if (k != 0) {
+				int i = Hashing.mix(k) & mask;
+				while (keys[i] != 0)
+					i = (i + 1) & mask;
+				keys[i] = k;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append('[');
+		long[] array = toArray();
+		for (int i = 0; i < array.length; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(array[i]);
+		}
+		sb.append("]size:").append(array.length);
+		return sb.toString();
+	}
+}
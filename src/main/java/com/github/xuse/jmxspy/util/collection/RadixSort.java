@@ -0,0 +1,85 @@
+package com.github.xuse.jmxspy.util.collection;
+
+import java.util.Arrays;
+
+/**
+ * 基本类型数组的排序。
+ * 元素较少时使用{@link Arrays#sort(long[], int, int)}，较多时使用按字节的LSD基数排序，
+ * 所有元素某一字节都相同时(例如文件大小的高位字节都是0)跳过该趟。
+ * @author Joey
+ *
+ */
+final class RadixSort {
+	/**
+	 * 超过此元素个数时使用基数排序
+	 */
+	static final int THRESHOLD = 1 << 16;
+
+	private RadixSort() {
+	}
+
+	static void sort(long[] a, int n) {
+		if (n < THRESHOLD) {
+			Arrays.sort(a, 0, n);
+			return;
+		}
+		long[] src = a;
+		long[] dst = new long[n];
+		int[] count = new int[256];
+		for (int shift = 0; shift < 64; shift += 8) {
+			Arrays.fill(count, 0);
+			for (int i = 0; i < n; i++) {
+				count[(int) ((src[i] ^ Long.MIN_VALUE) >>> shift) & 0xFF]++;
+			}
+			if (count[(int) ((src[0] ^ Long.MIN_VALUE) >>> shift) & 0xFF] == n)
+				continue;
+			toOffsets(count);
+			for (int i = 0; i < n; i++) {
+				long v = src[i];
+				dst[count[(int) ((v ^ Long.MIN_VALUE) >>> shift) & 0xFF]++] = v;
+			}
+			long[] t = src;
+			src = dst;
+			dst = t;
+		}
+		if (src != a)
+			System.arraycopy(src, 0, a, 0, n);
+	}
+
+	static void sort(int[] a, int n) {
+		if (n < THRESHOLD) {
+			Arrays.sort(a, 0, n);
+			return;
+		}
+		int[] src = a;
+		int[] dst = new int[n];
+		int[] count = new int[256];
+		for (int shift = 0; shift < 32; shift += 8) {
+			Arrays.fill(count, 0);
+			for (int i = 0; i < n; i++) {
+				count[((src[i] ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++;
+			}
+			if (count[((src[0] ^ Integer.MIN_VALUE) >>> shift) & 0xFF] == n)
+				continue;
+			toOffsets(count);
+			for (int i = 0; i < n; i++) {
+				int v = src[i];
+				dst[count[((v ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++] = v;
+			}
+			int[] t = src;
+			src = dst;
+			dst = t;
+		}
+		if (src != a)
+			System.arraycopy(src, 0, a, 0, n);
+	}
+
+	private static void toOffsets(int[] count) {
+		int sum = 0;
+		for (int i = 0; i < count.length; i++) {
+			int c = count[i];
+			count[i] = sum;
+			sum += c;
+		}
+	}
+}
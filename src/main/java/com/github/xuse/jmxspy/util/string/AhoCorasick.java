@@ -0,0 +1,238 @@
+package com.github.xuse.jmxspy.util.string;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick多模式字符串匹配。一次扫描文本即可找出所有模式串的出现位置，耗时与模式串的个数无关。
+ * <p>
+ * 模式串的编号即其在构造参数中的下标，null和空串会被忽略。构造完成后不可变，可以在多线程间共享。
+ * @author Joey
+ *
+ */
+public final class AhoCorasick {
+	private static final int ASCII = 128;
+
+	/**
+	 * 匹配结果的回调
+	 */
+	public interface MatchHandler {
+		/**
+		 * @param patternId 模式串编号
+		 * @param start 匹配的起始位置(含)
+		 * @param end 匹配的结束位置(不含)
+		 * @return false则停止查找
+		 */
+		boolean onMatch(int patternId, int start, int end);
+	}
+
+	private final int[] patternLength;
+	private final int maxLength;
+	/**
+	 * 根节点上ASCII字符的转移，其他字符和其他节点的转移在edge数组中二分查找
+	 */
+	private final int[] rootAscii = new int[ASCII];
+	/**
+	 * 节点i的转移为edgeChars/edgeTargets中[edgeStart[i],edgeStart[i+1])的部分，按字符排序
+	 */
+	private final int[] edgeStart;
+	private final char[] edgeChars;
+	private final int[] edgeTargets;
+	private final int[] fail;
+	/**
+	 * 在该节点结束的模式串编号，没有则为-1
+	 */
+	private final int[] output;
+	/**
+	 * 沿fail链下一个有输出的节点，没有则为-1
+	 */
+	private final int[] dict;
+
+	public AhoCorasick(String... patterns) {
+		this.patternLength = new int[patterns.length];
+		// 构造trie
+		List<Map<Character, Integer>> trie = new ArrayList<Map<Character, Integer>>();
+		trie.add(new HashMap<Character, Integer>());
+		List<Integer> outs = new ArrayList<Integer>();
+		outs.add(-1);
+		int max = 0;
+		for (int id = 0; id < patterns.length; id++) {
+			String p = patterns[id];
+			if (p == null || p.length() == 0)
+				continue;
+			patternLength[id] = p.length();
+			max = Math.max(max, p.length());
+			int node = 0;
+			for (int i = 0; i < p.length(); i++) {
+				Integer next = trie.get(node).get(p.charAt(i));
+				if (next == null) {
+					next = trie.size();
+					trie.add(new HashMap<Character, Integer>());
+					outs.add(-1);
+					trie.get(node).put(p.charAt(i), next);
+				}
+				node = next;
+			}
+			// 相同的模式串保留编号小的
+			if (outs.get(node) < 0)
+				outs.set(node, id);
+		}
+		this.maxLength = max;
+		int size = trie.size();
+		this.edgeStart = new int[size + 1];
+		this.edgeChars = new char[size - 1];
+		this.edgeTargets = new int[size - 1];
+		this.output = new int[size];
+		int e = 0;
+		for (int node = 0; node < size; node++) {
+			edgeStart[node] = e;
+			output[node] = outs.get(node);
+			Character[] chars = trie.get(node).keySet().toArray(new Character[0]);
+			Arrays.sort(chars);
+			for (Character c : chars) {
+				edgeChars[e] = c;
+				edgeTargets[e] = trie.get(node).get(c);
+				e++;
+			}
+		}
+		edgeStart[size] = e;
+		for (int i = edgeStart[0]; i < edgeStart[1]; i++) {
+			if (edgeChars[i] < ASCII)
+				rootAscii[edgeChars[i]] = edgeTargets[i];
+		}
+		// 广度优先计算fail和dict
+		this.fail = new int[size];
+		this.dict = new int[size];
+		dict[0] = -1;
+		int[] queue = new int[size];
+		int head = 0, tail = 0;
+		for (int i = edgeStart[0]; i < edgeStart[1]; i++) {
+			int child = edgeTargets[i];
+			fail[child] = 0;
+			dict[child] = -1;
+			queue[tail++] = child;
+		}
+		while (head < tail) {
+			int node = queue[head++];
+			for (int i = edgeStart[node]; i < edgeStart[node + 1]; i++) {
+				int child = edgeTargets[i];
+				int f = next(fail[node], edgeChars[i]);
+				fail[child] = f;
+				dict[child] = output[f] >= 0 ? f : dict[f];
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	/**
+	 * @return 模式串个数(含被忽略的null和空串)
+	 */
+	public int size() {
+		return patternLength.length;
+	}
+
+	/**
+	 * @return 最长的模式串长度
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	public int getPatternLength(int patternId) {
+		return patternLength[patternId];
+	}
+
+	/**
+	 * 查找所有的匹配，包括互相重叠的。同一结束位置上的多个匹配按模式串由长到短回调。
+	 * @param text 文本
+	 * @param handler 回调
+	 */
+	public void search(CharSequence text, MatchHandler handler) {
+		int state = 0;
+		for (int i = 0, n = text.length(); i < n; i++) {
+			state = next(state, text.charAt(i));
+			for (int s = output[state] >= 0 ? state : dict[state]; s > 0; s = dict[s]) {
+				int id = output[s];
+				if (!handler.onMatch(id, i + 1 - patternLength[id], i + 1))
+					return;
+			}
+		}
+	}
+
+	/**
+	 * 是否包含任意一个模式串
+	 */
+	public boolean containsAny(CharSequence text) {
+		int state = 0;
+		for (int i = 0, n = text.length(); i < n; i++) {
+			state = next(state, text.charAt(i));
+			if (output[state] >= 0 || dict[state] > 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 从from开始查找最靠左的匹配，起始位置相同时取编号小的模式串，与依次对每个模式串调用indexOf再取最小值的结果相同。
+	 * @param text 文本
+	 * @param from 起始位置
+	 * @param patternId 长度至少为1，返回时[0]为匹配的模式串编号
+	 * @return 匹配的起始位置，没有匹配返回-1
+	 */
+	public int find(CharSequence text, int from, int[] patternId) {
+		int bestStart = -1;
+		int bestId = -1;
+		int state = 0;
+		for (int i = from, n = text.length(); i < n; i++) {
+			state = next(state, text.charAt(i));
+			for (int s = output[state] >= 0 ? state : dict[state]; s > 0; s = dict[s]) {
+				int id = output[s];
+				int start = i + 1 - patternLength[id];
+				if (bestStart < 0 || start < bestStart || (start == bestStart && id < bestId)) {
+					bestStart = start;
+					bestId = id;
+				}
+			}
+			// 之后的匹配起始位置都不会早于bestStart了
+			if (bestStart >= 0 && i + 2 - maxLength > bestStart)
+				break;
+		}
+		if (bestStart >= 0)
+			patternId[0] = bestId;
+		return bestStart;
+	}
+
+	private int next(int state, char c) {
+		while (true) {
+			if (state == 0) {
+				if (c < ASCII)
+					return rootAscii[c];
+				int t = edge(0, c);
+				return t < 0 ? 0 : t;
+			}
+			int t = edge(state, c);
+			if (t >= 0)
+				return t;
+			state = fail[state];
+		}
+	}
+
+	private int edge(int node, char c) {
+		int lo = edgeStart[node];
+		int hi = edgeStart[node + 1] - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			char m = edgeChars[mid];
+			if (m < c)
+				lo = mid + 1;
+			else if (m > c)
+				hi = mid - 1;
+			else
+				return edgeTargets[mid];
+		}
+		return -1;
+	}
+}
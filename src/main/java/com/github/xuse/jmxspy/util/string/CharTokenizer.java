@@ -0,0 +1,150 @@
+package com.github.xuse.jmxspy.util.string;
+
+/**
+ * 按单个字符分隔CharSequence的游标，逐个访问分隔出的片段，不生成数组和List。
+ * 片段以[start,end)表示，只有调用{@link #token()}时才会生成String。
+ * <p>
+ * 默认与{@link com.github.xuse.jmxspy.util.StringUtils#split(String, char)}相同，相邻的分隔符视为一个；
+ * preserveAllTokens为true时相邻分隔符之间是一个空片段。可以用{@link #reset(CharSequence)}重复使用。非线程安全。
+ *
+ * <pre>
+ * CharTokenizer t = new CharTokenizer(line, '\t');
+ * while (t.next()) {
+ *     long v = t.parseLong();
+ * }
+ * </pre>
+ * @author Joey
+ *
+ */
+public final class CharTokenizer {
+	private final char separator;
+	private final boolean preserveAllTokens;
+	private CharSequence text;
+	private int pos;
+	private int start;
+	private int end;
+
+	public CharTokenizer(CharSequence text, char separator) {
+		this(text, separator, false);
+	}
+
+	public CharTokenizer(CharSequence text, char separator, boolean preserveAllTokens) {
+		this.separator = separator;
+		this.preserveAllTokens = preserveAllTokens;
+		reset(text);
+	}
+
+	/**
+	 * 从头开始分隔新的文本
+	 * @param text 文本，null视为空串
+	 * @return this
+	 */
+	public CharTokenizer reset(CharSequence text) {
+		this.text = text == null ? "" : text;
+		this.pos = 0;
+		this.start = this.end = 0;
+		return this;
+	}
+
+	/**
+	 * 移动到下一个片段
+	 * @return 没有更多片段时返回false
+	 */
+	public boolean next() {
+		CharSequence s = text;
+		int len = s.length();
+		int i = pos;
+		if (preserveAllTokens) {
+			// pos为len时是最后一个分隔符之后的空片段，大于len表示已结束
+			if (i > len || len == 0)
+				return false;
+		} else {
+			while (i < len && s.charAt(i) == separator)
+				i++;
+			if (i >= len)
+				return false;
+		}
+		int j = i;
+		while (j < len && s.charAt(j) != separator)
+			j++;
+		start = i;
+		end = j;
+		pos = j + 1;
+		return true;
+	}
+
+	/**
+	 * @return 当前片段的起始位置(含)
+	 */
+	public int start() {
+		return start;
+	}
+
+	/**
+	 * @return 当前片段的结束位置(不含)
+	 */
+	public int end() {
+		return end;
+	}
+
+	public int length() {
+		return end - start;
+	}
+
+	/**
+	 * @return 当前片段的字符串
+	 */
+	public String token() {
+		return text.subSequence(start, end).toString();
+	}
+
+	/**
+	 * 当前片段是否与给定字符串相同，不生成String
+	 */
+	public boolean tokenEquals(CharSequence s) {
+		int len = end - start;
+		if (s.length() != len)
+			return false;
+		for (int i = 0; i < len; i++) {
+			if (text.charAt(start + i) != s.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 将当前片段按十进制解析为long，不生成String
+	 * @throws NumberFormatException 不是合法的数字
+	 */
+	public long parseLong() {
+		return parseLong(10);
+	}
+
+	/**
+	 * 将当前片段按指定进制解析为long，不生成String
+	 * @throws NumberFormatException 不是合法的数字
+	 */
+	public long parseLong(int radix) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+			negative = text.charAt(i) == '-';
+			i++;
+		}
+		if (i == end)
+			throw new NumberFormatException("For input string: \"" + token() + "\"");
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multmin = limit / radix;
+		long result = 0;
+		for (; i < end; i++) {
+			int digit = Character.digit(text.charAt(i), radix);
+			if (digit < 0 || result < multmin)
+				throw new NumberFormatException("For input string: \"" + token() + "\"");
+			result *= radix;
+			if (result < limit + digit)
+				throw new NumberFormatException("For input string: \"" + token() + "\"");
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+}
@@ -0,0 +1,57 @@
+package com.github.xuse.jmxspy.util.string;
+
+/**
+ * 按include/exclude两组通配表达式(语法同{@link GlobMatcher})过滤名称，exclude优先。
+ * 每组表达式合并为一个{@link MultiPatternMatcher}，过滤的耗时与表达式的个数无关。构造后不可变，可以在多线程间共享。
+ * @author Joey
+ *
+ */
+public final class GlobFilter {
+	private final MultiPatternMatcher includes;
+	private final MultiPatternMatcher excludes;
+
+	/**
+	 * @param includes 要保留的名称，为空表示全部
+	 * @param excludes 要去掉的名称，为空表示不去掉
+	 */
+	public GlobFilter(String[] includes, String[] excludes) {
+		this(includes, excludes, false);
+	}
+
+	/**
+	 * @param includes 要保留的名称，为空表示全部
+	 * @param excludes 要去掉的名称，为空表示不去掉
+	 * @param ignoreCase 是否忽略大小写
+	 */
+	public GlobFilter(String[] includes, String[] excludes, boolean ignoreCase) {
+		this.includes = compile(includes, ignoreCase);
+		this.excludes = compile(excludes, ignoreCase);
+	}
+
+	private static MultiPatternMatcher compile(String[] globs, boolean ignoreCase) {
+		if (globs == null || globs.length == 0)
+			return null;
+		return RegexpUtils.multiPatternMatcher().ignoreCase(ignoreCase).addAll(globs).build();
+	}
+
+	/**
+	 * 名称是否保留
+	 */
+	public boolean accept(CharSequence name) {
+		return !isExcluded(name) && isIncluded(name);
+	}
+
+	/**
+	 * 是否匹配include，没有include时总是true
+	 */
+	public boolean isIncluded(CharSequence name) {
+		return includes == null || includes.matchesAny(name);
+	}
+
+	/**
+	 * 是否匹配exclude，没有exclude时总是false
+	 */
+	public boolean isExcluded(CharSequence name) {
+		return excludes != null && excludes.matchesAny(name);
+	}
+}
@@ -0,0 +1,305 @@
+package com.github.xuse.jmxspy.util.string;
+
+import java.util.Arrays;
+
+/**
+ * 不经过正则表达式的简易通配匹配，语法与{@link RegexpUtils#simpleMatchToRegexp(String)}相同：
+ * *表示任意数量字符，?表示0~1个字符，+表示1~n个字符，其他字符一律按照字面理解。整个字符串匹配才返回true。
+ * <p>
+ * 不含通配符、只有前缀、只有后缀、两侧都是*这几种常见形式直接用equals/startsWith/endsWith/contains判断。
+ * 其他形式按位并行模拟NFA，每个字符只需几次位运算，不会出现正则回溯。构造后不可变，可以在多线程间共享。
+ * @author Joey
+ *
+ */
+public final class GlobMatcher {
+	private static final int ASCII = 128;
+
+	static final byte LITERAL = 0;
+	/** 恰好1个字符，+拆成ANY和STAR */
+	static final byte ANY = 1;
+	/** 0~1个字符 */
+	static final byte OPTIONAL = 2;
+	static final byte STAR = 3;
+
+	private static final int KIND_EQUALS = 0;
+	private static final int KIND_PREFIX = 1;
+	private static final int KIND_SUFFIX = 2;
+	private static final int KIND_CONTAINS = 3;
+	private static final int KIND_NFA = 4;
+	/** 通配符超过63个位置时按动态规划匹配 */
+	private static final int KIND_DP = 5;
+
+	private final String glob;
+	private final boolean ignoreCase;
+	private final int kind;
+	private final String literal;
+
+	final byte[] types;
+	final char[] chars;
+	/** ASCII字符可以匹配的位置 */
+	private final long[] asciiMask;
+	/** 任意字符都能匹配的位置(ANY/OPTIONAL) */
+	private final long anyMask;
+	/** 可以停留的位置(STAR) */
+	private final long starMask;
+	/** 可以不消耗字符跳过的位置(STAR/OPTIONAL) */
+	private final long skipMask;
+
+	private GlobMatcher(String glob, boolean ignoreCase) {
+		this.glob = glob;
+		this.ignoreCase = ignoreCase;
+		int len = glob.length();
+		byte[] t = new byte[len * 2];
+		char[] c = new char[len * 2];
+		int m = 0;
+		for (int i = 0; i < len; i++) {
+			char ch = glob.charAt(i);
+			switch (ch) {
+			case '*':
+				// 连续的*只保留一个
+				if (m == 0 || t[m - 1] != STAR)
+					t[m++] = STAR;
+				break;
+			case '?':
+				t[m++] = OPTIONAL;
+				break;
+			case '+':
+				t[m++] = ANY;
+				t[m++] = STAR;
+				break;
+			default:
+				c[m] = ch;
+				t[m++] = LITERAL;
+			}
+		}
+		this.types = Arrays.copyOf(t, m);
+		this.chars = Arrays.copyOf(c, m);
+
+		int first = 0, last = m;
+		boolean leadingStar = m > 0 && types[0] == STAR;
+		boolean trailingStar = m > 0 && types[m - 1] == STAR;
+		if (leadingStar)
+			first++;
+		if (trailingStar && last > first)
+			last--;
+		boolean literalOnly = true;
+		for (int i = first; i < last; i++) {
+			if (types[i] != LITERAL) {
+				literalOnly = false;
+				break;
+			}
+		}
+		if (literalOnly) {
+			this.literal = new String(chars, first, last - first);
+			this.kind = leadingStar ? (trailingStar ? KIND_CONTAINS : KIND_SUFFIX) : (trailingStar ? KIND_PREFIX : KIND_EQUALS);
+			this.asciiMask = null;
+			this.anyMask = this.starMask = this.skipMask = 0;
+			return;
+		}
+		this.literal = null;
+		if (m >= 64) {
+			this.kind = KIND_DP;
+			this.asciiMask = null;
+			this.anyMask = this.starMask = this.skipMask = 0;
+			return;
+		}
+		this.kind = KIND_NFA;
+		long any = 0, star = 0, skip = 0;
+		long[] ascii = new long[ASCII];
+		for (int i = 0; i < m; i++) {
+			long bit = 1L << i;
+			switch (types[i]) {
+			case LITERAL:
+				char ch = chars[i];
+				if (ignoreCase) {
+					char u = Character.toUpperCase(ch), l = Character.toLowerCase(ch);
+					if (u < ASCII)
+						ascii[u] |= bit;
+					if (l < ASCII)
+						ascii[l] |= bit;
+				}
+				if (ch < ASCII)
+					ascii[ch] |= bit;
+				break;
+			case STAR:
+				star |= bit;
+				skip |= bit;
+				break;
+			case OPTIONAL:
+				any |= bit;
+				skip |= bit;
+				break;
+			default:
+				any |= bit;
+			}
+		}
+		for (int i = 0; i < ASCII; i++)
+			ascii[i] |= any;
+		this.asciiMask = ascii;
+		this.anyMask = any;
+		this.starMask = star;
+		this.skipMask = skip;
+	}
+
+	public static GlobMatcher compile(String glob) {
+		return new GlobMatcher(glob, false);
+	}
+
+	/**
+	 * @param glob 通配表达式
+	 * @param ignoreCase 是否忽略大小写
+	 */
+	public static GlobMatcher compile(String glob, boolean ignoreCase) {
+		return new GlobMatcher(glob, ignoreCase);
+	}
+
+	/**
+	 * 是否含有*?+通配符
+	 */
+	public static boolean hasWildcard(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '*' || c == '?' || c == '+')
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 形如*abc*时返回中间的字面值abc，否则返回null
+	 */
+	String getContainedLiteral() {
+		return kind == KIND_CONTAINS && literal.length() > 0 ? literal : null;
+	}
+
+	public String getGlob() {
+		return glob;
+	}
+
+	public boolean isIgnoreCase() {
+		return ignoreCase;
+	}
+
+	/**
+	 * 整个字符串是否匹配
+	 */
+	public boolean matches(CharSequence s) {
+		if (s == null)
+			return false;
+		switch (kind) {
+		case KIND_EQUALS:
+			return s.length() == literal.length() && regionMatches(s, 0);
+		case KIND_PREFIX:
+			return s.length() >= literal.length() && regionMatches(s, 0);
+		case KIND_SUFFIX:
+			return s.length() >= literal.length() && regionMatches(s, s.length() - literal.length());
+		case KIND_CONTAINS:
+			for (int i = 0, n = s.length() - literal.length(); i <= n; i++) {
+				if (regionMatches(s, i))
+					return true;
+			}
+			return false;
+		case KIND_NFA:
+			return matchesNfa(s);
+		default:
+			return matchesDp(s);
+		}
+	}
+
+	private boolean regionMatches(CharSequence s, int offset) {
+		String lit = literal;
+		for (int i = 0, n = lit.length(); i < n; i++) {
+			if (!charEquals(lit.charAt(i), s.charAt(offset + i)))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean charEquals(char p, char c) {
+		if (p == c)
+			return true;
+		if (!ignoreCase)
+			return false;
+		char u1 = Character.toUpperCase(p), u2 = Character.toUpperCase(c);
+		return u1 == u2 || Character.toLowerCase(u1) == Character.toLowerCase(u2);
+	}
+
+	/**
+	 * 第i位为1表示已经匹配了前i个元素，全部m个元素匹配完即第m位为1
+	 */
+	private boolean matchesNfa(CharSequence s) {
+		long state = closure(1L);
+		long accept = 1L << types.length;
+		for (int i = 0, n = s.length(); i < n && state != 0; i++) {
+			char c = s.charAt(i);
+			long mask = c < ASCII ? asciiMask[c] : nonAsciiMask(c);
+			state = closure(((state & mask) << 1) | (state & starMask));
+		}
+		return (state & accept) != 0;
+	}
+
+	private long closure(long state) {
+		while (true) {
+			long next = state | ((state & skipMask) << 1);
+			if (next == state)
+				return state;
+			state = next;
+		}
+	}
+
+	private long nonAsciiMask(char c) {
+		long mask = anyMask;
+		for (int i = 0; i < types.length; i++) {
+			if (types[i] == LITERAL && charEquals(chars[i], c))
+				mask |= 1L << i;
+		}
+		return mask;
+	}
+
+	private boolean matchesDp(CharSequence s) {
+		int m = types.length;
+		boolean[] cur = new boolean[m + 1];
+		boolean[] next = new boolean[m + 1];
+		cur[0] = true;
+		closure(cur);
+		for (int i = 0, n = s.length(); i < n; i++) {
+			char c = s.charAt(i);
+			Arrays.fill(next, false);
+			boolean alive = false;
+			for (int j = 0; j < m; j++) {
+				if (!cur[j])
+					continue;
+				switch (types[j]) {
+				case STAR:
+					next[j] = alive = true;
+					break;
+				case LITERAL:
+					if (charEquals(chars[j], c))
+						next[j + 1] = alive = true;
+					break;
+				default:
+					next[j + 1] = alive = true;
+				}
+			}
+			if (!alive)
+				return false;
+			closure(next);
+			boolean[] tmp = cur;
+			cur = next;
+			next = tmp;
+		}
+		return cur[m];
+	}
+
+	private void closure(boolean[] state) {
+		for (int j = 0; j < types.length; j++) {
+			if (state[j] && types[j] != LITERAL && types[j] != ANY)
+				state[j + 1] = true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return glob;
+	}
+}
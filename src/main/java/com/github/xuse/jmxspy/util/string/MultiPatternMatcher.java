@@ -0,0 +1,537 @@
+package com.github.xuse.jmxspy.util.string;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 多个简易通配表达式(语法同{@link GlobMatcher})的组合匹配器，扫描一遍字符串即可得到所有匹配的表达式编号，
+ * 耗时与表达式的个数基本无关。适合用大量include/exclude规则过滤文件名、压缩包条目、线程名等。
+ * <p>
+ * 形如*abc*的表达式以及{@link Builder#addContains(String)}添加的字面值放入一个{@link AhoCorasick}自动机，
+ * 其余的表达式合并成一个NFA后用子集构造法预先转换为DFA，每个字符只需一次查表。
+ * 字符按表达式中出现过的字面字符划分为等价类，没出现过的字符都是同一类，因此转移表很小。
+ * DFA状态数超过{@link #MAX_DFA_STATES}时(表达式很多且*很多时可能发生)，将表达式对半拆分为多个DFA，每个DFA各扫描一遍。
+ * <p>
+ * 表达式的编号即添加的顺序，从0开始。构造DFA比较耗时，应当构造一次后重复使用。构造后不可变，可以在多线程间共享。
+ * <pre>
+ * MultiPatternMatcher m = RegexpUtils.multiPatternMatcher().ignoreCase(true).add("*.class").add("META-INF/*").build();
+ * if (m.matchesAny(name)) ...
+ * </pre>
+ * @author Joey
+ *
+ */
+public final class MultiPatternMatcher {
+	private static final int ASCII = 128;
+	/**
+	 * DFA状态数的上限
+	 */
+	public static final int MAX_DFA_STATES = 4096;
+
+	/**
+	 * 构造{@link MultiPatternMatcher}
+	 */
+	public static final class Builder {
+		private final List<String> patterns = new ArrayList<String>();
+		private final List<Boolean> literal = new ArrayList<Boolean>();
+		private boolean ignoreCase;
+
+		Builder() {
+		}
+
+		/**
+		 * 是否忽略大小写，对所有表达式有效
+		 */
+		public Builder ignoreCase(boolean ignoreCase) {
+			this.ignoreCase = ignoreCase;
+			return this;
+		}
+
+		/**
+		 * 添加一个通配表达式，整个字符串匹配才算匹配。编号为之前已添加的个数。
+		 */
+		public Builder add(String glob) {
+			patterns.add(glob);
+			literal.add(Boolean.FALSE);
+			return this;
+		}
+
+		public Builder addAll(String... globs) {
+			for (String glob : globs)
+				add(glob);
+			return this;
+		}
+
+		/**
+		 * 添加一个字面值，字符串中包含该字面值即算匹配，*?+也按字面理解。编号为之前已添加的个数。
+		 */
+		public Builder addContains(String literal) {
+			patterns.add(literal);
+			this.literal.add(Boolean.TRUE);
+			return this;
+		}
+
+		/**
+		 * @return 已添加的表达式个数
+		 */
+		public int size() {
+			return patterns.size();
+		}
+
+		public MultiPatternMatcher build() {
+			return new MultiPatternMatcher(this);
+		}
+	}
+
+	private final String[] patterns;
+	private final boolean ignoreCase;
+
+	/** AhoCorasick中的编号到表达式编号，相同的字面值只加入一次 */
+	private final int[][] acIds;
+	private final AhoCorasick ac;
+	/** 空的contains字面值，匹配任何字符串 */
+	private final int[] alwaysIds;
+
+	/** 字符等价类，0为没有出现在任何表达式中的字符 */
+	private final int[] asciiClass = new int[ASCII];
+	private final char[] otherChars;
+	private final int[] otherClass;
+	private final int classCount;
+	/** 一般只有一个，状态数超过上限时拆分为多个 */
+	private final Dfa[] dfas;
+	/** 单独一个就超过状态数上限的表达式，逐个匹配 */
+	private final int[] slowIds;
+	private final GlobMatcher[] slowGlobs;
+
+	MultiPatternMatcher(Builder b) {
+		this.patterns = b.patterns.toArray(new String[0]);
+		this.ignoreCase = b.ignoreCase;
+		Map<String, List<Integer>> acPatterns = new LinkedHashMap<String, List<Integer>>();
+		List<Integer> always = new ArrayList<Integer>();
+		List<Integer> globIds = new ArrayList<Integer>();
+		List<GlobMatcher> globs = new ArrayList<GlobMatcher>();
+		for (int id = 0; id < patterns.length; id++) {
+			String p = patterns[id];
+			String contained;
+			GlobMatcher g = null;
+			if (b.literal.get(id)) {
+				contained = p;
+			} else {
+				g = GlobMatcher.compile(p, ignoreCase);
+				contained = g.getContainedLiteral();
+			}
+			if (contained != null && contained.length() == 0) {
+				always.add(id);
+			} else if (contained != null) {
+				String key = ignoreCase ? fold(contained) : contained;
+				List<Integer> ids = acPatterns.get(key);
+				if (ids == null) {
+					ids = new ArrayList<Integer>();
+					acPatterns.put(key, ids);
+				}
+				ids.add(id);
+			} else {
+				globIds.add(id);
+				globs.add(g);
+			}
+		}
+		this.acIds = new int[acPatterns.size()][];
+		int n = 0;
+		for (List<Integer> ids : acPatterns.values())
+			acIds[n++] = toArray(ids);
+		this.ac = acPatterns.isEmpty() ? null : new AhoCorasick(acPatterns.keySet().toArray(new String[0]));
+		this.alwaysIds = toArray(always);
+
+		TreeSet<Character> alphabet = new TreeSet<Character>();
+		for (GlobMatcher g : globs) {
+			for (int i = 0; i < g.types.length; i++) {
+				if (g.types[i] == GlobMatcher.LITERAL)
+					alphabet.add(ignoreCase ? fold(g.chars[i]) : g.chars[i]);
+			}
+		}
+		Map<Character, Integer> classes = new HashMap<Character, Integer>();
+		for (Character c : alphabet)
+			classes.put(c, classes.size() + 1);
+		this.classCount = classes.size() + 1;
+		for (char c = 0; c < ASCII; c++) {
+			Integer cls = classes.get(ignoreCase ? fold(c) : c);
+			asciiClass[c] = cls == null ? 0 : cls;
+		}
+		// 非ASCII字符的类别二分查找，忽略大小写时先折叠再查找
+		Character[] others = alphabet.tailSet((char) ASCII).toArray(new Character[0]);
+		this.otherChars = new char[others.length];
+		this.otherClass = new int[others.length];
+		for (int i = 0; i < others.length; i++) {
+			otherChars[i] = others[i];
+			otherClass[i] = classes.get(others[i]);
+		}
+
+		List<Dfa> dfaList = new ArrayList<Dfa>();
+		List<Integer> slow = new ArrayList<Integer>();
+		List<GlobMatcher> slowList = new ArrayList<GlobMatcher>();
+		if (!globs.isEmpty())
+			build(globIds, globs, dfaList, slow, slowList);
+		this.dfas = dfaList.toArray(new Dfa[0]);
+		this.slowIds = toArray(slow);
+		this.slowGlobs = slowList.toArray(new GlobMatcher[0]);
+	}
+
+	/**
+	 * 状态数超过上限时对半拆分，直到每组都能构造出DFA
+	 */
+	private void build(List<Integer> ids, List<GlobMatcher> globs, List<Dfa> dfaList, List<Integer> slow, List<GlobMatcher> slowList) {
+		Dfa dfa = Dfa.build(this, ids, globs);
+		if (dfa != null) {
+			dfaList.add(dfa);
+		} else if (ids.size() == 1) {
+			slow.add(ids.get(0));
+			slowList.add(globs.get(0));
+		} else {
+			int half = ids.size() / 2;
+			build(ids.subList(0, half), globs.subList(0, half), dfaList, slow, slowList);
+			build(ids.subList(half, ids.size()), globs.subList(half, ids.size()), dfaList, slow, slowList);
+		}
+	}
+
+	private int classOf(char c) {
+		return c < ASCII ? asciiClass[c] : otherClass(c);
+	}
+
+	/**
+	 * 多个通配表达式合并后的DFA
+	 */
+	private static final class Dfa {
+		private final int classCount;
+		/** 状态s在类别c上的转移为transitions[s*classCount+c]，-1表示不可能再匹配 */
+		private final int[] transitions;
+		/** 状态s上匹配的表达式编号 */
+		private final int[][] accepts;
+
+		private Dfa(int classCount, int[] transitions, int[][] accepts) {
+			this.classCount = classCount;
+			this.transitions = transitions;
+			this.accepts = accepts;
+		}
+
+		/**
+		 * 子集构造。NFA的位置依次排列各表达式的元素，每个表达式的最后一个位置表示整个表达式匹配完成。
+		 * @return 状态数超过上限时返回null
+		 */
+		static Dfa build(MultiPatternMatcher m, List<Integer> ids, List<GlobMatcher> globs) {
+			int total = 0;
+			for (GlobMatcher g : globs)
+				total += g.types.length + 1;
+			// 位置上的元素类型，-1表示表达式结束；字面字符的类别；结束位置上的表达式编号
+			byte[] posType = new byte[total];
+			int[] posClass = new int[total];
+			int[] posAccept = new int[total];
+			BitSet start = new BitSet(total);
+			int pos = 0;
+			for (int i = 0; i < globs.size(); i++) {
+				GlobMatcher g = globs.get(i);
+				start.set(pos);
+				for (int j = 0; j < g.types.length; j++, pos++) {
+					posType[pos] = g.types[j];
+					if (g.types[j] == GlobMatcher.LITERAL)
+						posClass[pos] = m.classOf(g.chars[j]);
+				}
+				posType[pos] = -1;
+				posAccept[pos++] = ids.get(i);
+			}
+			int k = m.classCount;
+			closure(start, posType);
+			Map<BitSet, Integer> index = new HashMap<BitSet, Integer>();
+			List<BitSet> states = new ArrayList<BitSet>();
+			index.put(start, 0);
+			states.add(start);
+			List<int[]> rows = new ArrayList<int[]>();
+			List<int[]> accepts = new ArrayList<int[]>();
+			BitSet[] byClass = new BitSet[k];
+			for (int s = 0; s < states.size(); s++) {
+				BitSet cur = states.get(s);
+				// 任意字符都会到达的位置，和只有某个类别的字符才会到达的位置分开计算
+				BitSet common = new BitSet(total);
+				List<Integer> matched = new ArrayList<Integer>();
+				for (int c = 0; c < k; c++) {
+					if (byClass[c] != null)
+						byClass[c].clear();
+				}
+				for (int p = cur.nextSetBit(0); p >= 0; p = cur.nextSetBit(p + 1)) {
+					switch (posType[p]) {
+					case -1:
+						matched.add(posAccept[p]);
+						break;
+					case GlobMatcher.STAR:
+						common.set(p);
+						break;
+					case GlobMatcher.LITERAL:
+						int c = posClass[p];
+						if (byClass[c] == null)
+							byClass[c] = new BitSet(total);
+						byClass[c].set(p + 1);
+						break;
+					default:
+						common.set(p + 1);
+					}
+				}
+				int[] row = new int[k];
+				int commonTarget = -2;
+				for (int c = 0; c < k; c++) {
+					BitSet next;
+					if (byClass[c] == null || byClass[c].isEmpty()) {
+						if (commonTarget != -2) {
+							row[c] = commonTarget;
+							continue;
+						}
+						next = (BitSet) common.clone();
+					} else {
+						next = (BitSet) byClass[c].clone();
+						next.or(common);
+					}
+					int target;
+					if (next.isEmpty()) {
+						target = -1;
+					} else {
+						closure(next, posType);
+						Integer t = index.get(next);
+						if (t == null) {
+							if (states.size() >= MAX_DFA_STATES)
+								return null;
+							t = states.size();
+							index.put(next, t);
+							states.add(next);
+						}
+						target = t;
+					}
+					row[c] = target;
+					if (byClass[c] == null || byClass[c].isEmpty())
+						commonTarget = target;
+				}
+				rows.add(row);
+				accepts.add(toArray(matched));
+			}
+			int[] transitions = new int[rows.size() * k];
+			for (int s = 0; s < rows.size(); s++)
+				System.arraycopy(rows.get(s), 0, transitions, s * k, k);
+			return new Dfa(k, transitions, accepts.toArray(new int[0][]));
+		}
+
+		private static void closure(BitSet set, byte[] posType) {
+			// 只会向后跳，按位置从小到大处理一遍即可
+			for (int p = set.nextSetBit(0); p >= 0; p = set.nextSetBit(p + 1)) {
+				if (posType[p] == GlobMatcher.STAR || posType[p] == GlobMatcher.OPTIONAL)
+					set.set(p + 1);
+			}
+		}
+
+		/**
+		 * @return 最终的状态，-1表示没有表达式匹配
+		 */
+		int run(MultiPatternMatcher m, CharSequence s) {
+			int state = 0;
+			int[] table = transitions;
+			int k = classCount;
+			for (int i = 0, n = s.length(); i < n; i++) {
+				state = table[state * k + m.classOf(s.charAt(i))];
+				if (state < 0)
+					return -1;
+			}
+			return state;
+		}
+	}
+
+	/**
+	 * @return 表达式个数
+	 */
+	public int size() {
+		return patterns.length;
+	}
+
+	/**
+	 * @return 编号为id的表达式
+	 */
+	public String getPattern(int id) {
+		return patterns[id];
+	}
+
+	/**
+	 * 是否有任意一个表达式匹配
+	 */
+	public boolean matchesAny(CharSequence s) {
+		if (s == null)
+			return false;
+		if (alwaysIds.length > 0)
+			return true;
+		if (ac != null && ac.containsAny(ignoreCase ? new Folded(s) : s))
+			return true;
+		for (Dfa dfa : dfas) {
+			int state = dfa.run(this, s);
+			if (state >= 0 && dfa.accepts[state].length > 0)
+				return true;
+		}
+		for (GlobMatcher g : slowGlobs) {
+			if (g.matches(s))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 得到所有匹配的表达式编号
+	 * @param s 字符串
+	 * @param result 匹配的编号，调用前的内容会被清除
+	 * @return 匹配的个数
+	 */
+	public int matchAll(CharSequence s, final BitSet result) {
+		result.clear();
+		if (s == null)
+			return 0;
+		for (int id : alwaysIds)
+			result.set(id);
+		if (ac != null) {
+			ac.search(ignoreCase ? new Folded(s) : s, new AhoCorasick.MatchHandler() {
+				public boolean onMatch(int patternId, int start, int end) {
+					for (int id : acIds[patternId])
+						result.set(id);
+					return true;
+				}
+			});
+		}
+		for (Dfa dfa : dfas) {
+			int state = dfa.run(this, s);
+			if (state >= 0) {
+				for (int id : dfa.accepts[state])
+					result.set(id);
+			}
+		}
+		for (int i = 0; i < slowGlobs.length; i++) {
+			if (slowGlobs[i].matches(s))
+				result.set(slowIds[i]);
+		}
+		return result.cardinality();
+	}
+
+	/**
+	 * 得到所有匹配的表达式编号，从小到大排列
+	 */
+	public int[] matchAll(CharSequence s) {
+		BitSet result = new BitSet(patterns.length);
+		matchAll(s, result);
+		return result.stream().toArray();
+	}
+
+	private int otherClass(char c) {
+		if (ignoreCase) {
+			// 非ASCII字符可能折叠为ASCII字符，如开尔文符号
+			c = fold(c);
+			if (c < ASCII)
+				return asciiClass[c];
+		}
+		int i = Arrays.binarySearch(otherChars, c);
+		return i < 0 ? 0 : otherClass[i];
+	}
+
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static String fold(String s) {
+		char[] cs = s.toCharArray();
+		for (int i = 0; i < cs.length; i++)
+			cs[i] = fold(cs[i]);
+		return new String(cs);
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] result = new int[list.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = list.get(i);
+		return result;
+	}
+
+	/**
+	 * 忽略大小写时交给AhoCorasick的视图，不复制字符串
+	 */
+	private static final class Folded implements CharSequence {
+		private final CharSequence s;
+
+		Folded(CharSequence s) {
+			this.s = s;
+		}
+
+		public int length() {
+			return s.length();
+		}
+
+		public char charAt(int index) {
+			return fold(s.charAt(index));
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			return new Folded(s.subSequence(start, end));
+		}
+
+		@Override
+		public String toString() {
+			return fold(s.toString());
+		}
+	}
+
+	/**
+	 * 对比逐个匹配和组合匹配的耗时，表达式个数从10增加到1000
+	 */
+	public static void main(String[] args) {
+		final int LOOPS = 200000;
+		String[] names = { "com/github/xuse/jmxspy/util/ZipUtils.class", "META-INF/MANIFEST.MF", "lib/commons-lang3-3.4.jar", "data/report-7-01.csv",
+				"src/main/resources/simplelogger.properties" };
+		for (int count : new int[] { 10, 100, 1000 }) {
+			Builder b = RegexpUtils.multiPatternMatcher();
+			GlobMatcher[] single = new GlobMatcher[count];
+			for (int i = 0; i < count; i++) {
+				String glob;
+				switch (i % 4) {
+				case 0:
+					glob = "*.ext" + i;
+					break;
+				case 1:
+					glob = "dir" + i + "/*";
+					break;
+				case 2:
+					glob = "*tmp" + i + "*";
+					break;
+				default:
+					glob = "data/report-" + i + "-??.csv";
+				}
+				b.add(glob);
+				single[i] = GlobMatcher.compile(glob);
+			}
+			long t = System.nanoTime();
+			MultiPatternMatcher m = b.build();
+			long build = System.nanoTime() - t;
+			BitSet result = new BitSet();
+			int hits = 0;
+			for (int round = 0; round < 2; round++) {
+				t = System.nanoTime();
+				for (int i = 0; i < LOOPS; i++) {
+					String name = names[i % names.length];
+					for (GlobMatcher g : single) {
+						if (g.matches(name))
+							hits++;
+					}
+				}
+				long loop = System.nanoTime() - t;
+				t = System.nanoTime();
+				for (int i = 0; i < LOOPS; i++) {
+					hits += m.matchAll(names[i % names.length], result);
+				}
+				long multi = System.nanoTime() - t;
+				System.out.println(count + " patterns: loop " + loop / LOOPS + "ns, multi " + multi / LOOPS + "ns (dfa=" + m.dfas.length + ", build " + build / 1000000 + "ms, " + hits + ")");
+			}
+		}
+	}
+}
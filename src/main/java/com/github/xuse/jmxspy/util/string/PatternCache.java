@@ -0,0 +1,166 @@
+package com.github.xuse.jmxspy.util.string;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 编译后的正则表达式缓存，以(正则表达式,flags)为key，容量有上限，满了以后淘汰最久没有使用的。
+ * <p>
+ * 命中时只有一次ConcurrentHashMap查找，不加锁，flags为0时直接以正则表达式字符串为key，不创建对象。
+ * 最近访问时间用System.nanoTime()近似记录，距上次记录不到1ms时不再写入，热点条目不会在线程间反复争用同一缓存行。
+ * 未命中时在锁外编译Pattern，放入缓存和淘汰在同一把锁内完成，并发未命中也不会超出容量。淘汰时扫描全部条目，
+ * 容量一般只有几百，扫描的开销远小于编译一个正则。
+ * @author Joey
+ *
+ */
+public final class PatternCache {
+	/** 访问时间的记录精度 */
+	private static final long STAMP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/** flags不为0时的key，flags为0时key就是正则表达式本身 */
+	private static final class Key {
+		final String regex;
+		final int flags;
+		final int hash;
+
+		Key(String regex, int flags) {
+			this.regex = regex;
+			this.flags = flags;
+			this.hash = regex.hashCode() * 31 + flags;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key o = (Key) obj;
+			return flags == o.flags && regex.equals(o.regex);
+		}
+	}
+
+	private static final class Entry {
+		final Pattern pattern;
+		volatile long lastAccess;
+
+		Entry(Pattern pattern, long lastAccess) {
+			this.pattern = pattern;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	private final int capacity;
+	private final Map<Object, Entry> map;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param capacity 最多缓存的Pattern个数
+	 */
+	public PatternCache(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		this.map = new ConcurrentHashMap<Object, Entry>(capacity * 4 / 3 + 1);
+	}
+
+	public Pattern get(String regex) {
+		return get(regex, 0);
+	}
+
+	/**
+	 * 得到编译好的Pattern，不在缓存中时编译并放入缓存
+	 * @param regex 正则表达式
+	 * @param flags 同{@link Pattern#compile(String, int)}
+	 * @return Pattern
+	 */
+	public Pattern get(String regex, int flags) {
+		Object key = flags == 0 ? regex : new Key(regex, flags);
+		Entry e = map.get(key);
+		if (e != null) {
+			hits.increment();
+			long now = System.nanoTime();
+			if (now - e.lastAccess > STAMP_NANOS)
+				e.lastAccess = now;
+			return e.pattern;
+		}
+		misses.increment();
+		Pattern p = Pattern.compile(regex, flags);
+		return put(key, p);
+	}
+
+	private synchronized Pattern put(Object key, Pattern p) {
+		Entry old = map.get(key);
+		if (old != null)
+			return old.pattern;
+		while (map.size() >= capacity) {
+			if (!evictOldest())
+				break;
+		}
+		map.put(key, new Entry(p, System.nanoTime()));
+		return p;
+	}
+
+	private boolean evictOldest() {
+		Object oldest = null;
+		long min = 0;
+		for (Map.Entry<Object, Entry> e : map.entrySet()) {
+			long t = e.getValue().lastAccess;
+			// nanoTime可能为负数，只能比较差值
+			if (oldest == null || t - min < 0) {
+				min = t;
+				oldest = e.getKey();
+			}
+		}
+		if (oldest == null || map.remove(oldest) == null)
+			return false;
+		evictions.increment();
+		return true;
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return 命中率，没有访问时为0
+	 */
+	public double getHitRate() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	public void clear() {
+		map.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "PatternCache[size=" + size() + "/" + capacity + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+}
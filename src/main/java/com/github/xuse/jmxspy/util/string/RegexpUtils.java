@@ -15,8 +15,6 @@
  */
 package com.github.xuse.jmxspy.util.string;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,9 +30,9 @@ public abstract class RegexpUtils {
 	//用于匹配任意字符串的非贪婪表达式
 	public static final String MATCH_ANY_STRING=".*?";
 	
-	//正则表达式缓存池，为了防止反复编译相同的正则表达式浪费时间，设置长度为64的正则表达式缓存(pattern是线程安全的,Matcher不是)
-	private static final int PATTERN_CACHE_SIZE=64;
-	private static final Map<String, Pattern> cache=new ConcurrentHashMap<String,Pattern>(PATTERN_CACHE_SIZE);
+	//正则表达式缓存池，为了防止反复编译相同的正则表达式浪费时间，按LRU保留最近使用的256个正则表达式(pattern是线程安全的,Matcher不是)
+	private static final int PATTERN_CACHE_SIZE=256;
+	private static final PatternCache cache=new PatternCache(PATTERN_CACHE_SIZE);
 	
 	public static final char[] STAR_QUESTION=new char[]{'*','?','+'};
 	
@@ -122,8 +120,58 @@ public abstract class RegexpUtils {
 		// 将除了指定字符之外的所有正则元字符全部用转义符更改为字面含义
 		String regStr = simpleMatchToRegexp(key);
 		regStr = ((matchStart) ? "" : RegexpUtils.MATCH_ANY_STRING) + ((wildcardSpace) ? key.replace(" ", "\\s+") : regStr) + ((matchEnd) ? "" : RegexpUtils.MATCH_ANY_STRING);
-		Pattern p=Pattern.compile(regStr);
-		return p;
+		return cache.get(regStr);
+	}
+	
+	/**
+	 * 得到简易通配的匹配器，不编译正则表达式。和{@link #simplePattern(String, boolean, boolean, boolean, boolean)}不同，
+	 * IgnoreCase为true时被匹配的字符串不需要转为大写。
+	 * @param key 简易通配语法，见{@link #simpleMatchToRegexp(String)}
+	 * @param IgnoreCase
+	 * @param matchStart 为false时前面可以有任意字符
+	 * @param matchEnd 为false时后面可以有任意字符
+	 * @return
+	 */
+	public static GlobMatcher simpleMatcher(String key, boolean IgnoreCase, boolean matchStart, boolean matchEnd){
+		if(!matchStart)key="*"+key;
+		if(!matchEnd)key=key+"*";
+		return GlobMatcher.compile(key, IgnoreCase);
+	}
+	
+	/**
+	 * 构造多个简易通配表达式的组合匹配器，一次扫描得到所有匹配的表达式，耗时与表达式个数无关
+	 * @return
+	 * @see MultiPatternMatcher
+	 */
+	public static MultiPatternMatcher.Builder multiPatternMatcher(){
+		return new MultiPatternMatcher.Builder();
+	}
+	
+	/**
+	 * 从缓存中得到编译好的正则表达式
+	 * @param regexp
+	 * @return
+	 */
+	public static Pattern getPattern(String regexp){
+		return cache.get(regexp);
+	}
+	
+	/**
+	 * 从缓存中得到编译好的正则表达式
+	 * @param regexp
+	 * @param flags 同{@link Pattern#compile(String, int)}
+	 * @return
+	 */
+	public static Pattern getPattern(String regexp,int flags){
+		return cache.get(regexp, flags);
+	}
+	
+	/**
+	 * 正则表达式缓存，可以查看命中率等统计信息
+	 * @return
+	 */
+	public static PatternCache getPatternCache(){
+		return cache;
 	}
 	
 	/**
@@ -173,6 +221,16 @@ public abstract class RegexpUtils {
 		return m.matches();
 	}
 	
+	/**
+	 * 效果等同于String.matches，使用预先编译好的正则表达式
+	 * @param str
+	 * @param pattern
+	 * @return
+	 */
+	public static boolean matches(String str,Pattern pattern){
+		return pattern.matcher(str).matches();
+	}
+	
 	public static String[] getSimpleMatchResult(String str,String key,boolean strict){
 		key=escapeRegChars(key,STAR_QUESTION);
 		key=StringUtils.replaceEach(key, new String[]{"*","?","+"}, new String[]{"(.*)","(.?)","(.+)"});
@@ -188,15 +246,28 @@ public abstract class RegexpUtils {
 	 */
 	public static String[] getMatcherResult(String str,String regexp,boolean strict){
 		if(!strict){
-			String tmp=StringUtils.remove(str, "\\(");
-			tmp=StringUtils.remove(str, "\\)");
+			String tmp=StringUtils.remove(regexp, "\\(");
+			tmp=StringUtils.remove(tmp, "\\)");
 			if(tmp.indexOf('(')>-1 && tmp.indexOf(')')>-1){
 				//用户给出的正则中已经有了分组信息
 			}else{
 				regexp="("+regexp+")";//补充一个默认分组
 			}
 		}
-		Matcher m=getMatcher(str,regexp,strict);
+		return getMatcherResult(getMatcher(str,regexp,strict));
+	}
+	
+	/**
+	 * 得到匹配结果分组，字符串需要完全匹配正则表达式。
+	 * @param str     字符串
+	 * @param pattern 预先编译好的正则表达式
+	 * @return        如果没有匹配上，返回一个null。
+	 */
+	public static String[] getMatcherResult(String str,Pattern pattern){
+		return getMatcherResult(pattern.matcher(str));
+	}
+	
+	private static String[] getMatcherResult(Matcher m){
 		if(!m.matches())return null;
 		int n=m.groupCount();
 		if(n==0)return new String[]{m.group()};
@@ -209,18 +280,34 @@ public abstract class RegexpUtils {
 	
 	private static Matcher getMatcher(String str, String regexp, boolean strict) {
 		if(!strict)regexp=MATCH_ANY_STRING+regexp+MATCH_ANY_STRING;
-		Pattern p=cache.get(regexp);
-		if(p==null){
-			p=Pattern.compile(regexp);
-			addToCache(p);
-		}
-		return p.matcher(str);
+		return cache.get(regexp).matcher(str);
 	}
-	//将Pattern缓存 
-	private static void addToCache(Pattern p) {
-		if(cache.size()==PATTERN_CACHE_SIZE){
-			cache.clear();
+	
+	/**
+	 * 对比每次编译、使用缓存和不使用正则三种方式匹配文件名的耗时
+	 */
+	public static void main(String[] args) {
+		final int LOOPS=500000;
+		String[] names={"data.part1.zip","data.part12.zip","report-2019.log","readme.txt","app.part003.7z"};
+		for(int round=0;round<3;round++){
+			long start=System.nanoTime();
+			int count=0;
+			for(int i=0;i<LOOPS;i++){
+				if(Pattern.compile(simpleMatchToRegexp("*.part*.zip")).matcher(names[i%names.length]).matches())count++;
+			}
+			long compile=System.nanoTime()-start;
+			start=System.nanoTime();
+			for(int i=0;i<LOOPS;i++){
+				if(getPattern(simpleMatchToRegexp("*.part*.zip")).matcher(names[i%names.length]).matches())count++;
+			}
+			long cached=System.nanoTime()-start;
+			start=System.nanoTime();
+			GlobMatcher glob=GlobMatcher.compile("*.part*.zip");
+			for(int i=0;i<LOOPS;i++){
+				if(glob.matches(names[i%names.length]))count++;
+			}
+			long matcher=System.nanoTime()-start;
+			System.out.println("compile:"+compile/LOOPS+"ns cached:"+cached/LOOPS+"ns glob:"+matcher/LOOPS+"ns ("+count+") "+cache);
 		}
-		cache.put(p.pattern(), p);
 	}
 }
@@ -0,0 +1,403 @@
+package com.github.xuse.jmxspy.util.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.xuse.jmxspy.util.Assert;
+import com.github.xuse.jmxspy.util.FileName;
+import com.github.xuse.jmxspy.util.IOUtils;
+
+/**
+ * 分卷输出流，文件命名规则和{@link VolSwitchAbleOutputStream}相同：只有一卷时使用原文件名，
+ * 出现第二卷时第一卷改名为 xxx.part1.ext，后续为 xxx.part2.ext ...
+ * <p>
+ * 和{@link VolSwitchAbleOutputStream}相比:
+ * <ul>
+ * <li>数据先写入可配置大小的缓冲区，再通过FileChannel整块写出。</li>
+ * <li>当前卷写过一半时，下一卷的文件在后台线程中创建并预分配空间，切换分卷时无须等待。只有一卷时不会创建多余的文件。</li>
+ * <li>第二卷起的文件必须由本流新建，同名文件已经存在时抛出IOException，不会覆盖。</li>
+ * <li>写满的分卷在后台线程中截断、按{@link SyncPolicy}刷盘、关闭和改名，写入线程直接继续写下一卷。</li>
+ * <li>记录每一卷的大小、CRC32和写入耗时，见{@link #getVolumnStats()}。开启{@link #setManifest(boolean)}后关闭时写出分卷清单{@link VolumnManifest}。</li>
+ * </ul>
+ * 本类不是线程安全的。
+ *
+ * @author Joey
+ */
+public class ParallelVolumnOutputStream extends OutputStream {
+	private static final Logger log = LoggerFactory.getLogger(ParallelVolumnOutputStream.class);
+
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * 刷盘策略
+	 */
+	public enum SyncPolicy {
+		/**
+		 * 不主动刷盘，由操作系统决定
+		 */
+		NONE,
+		/**
+		 * 每一卷写完关闭前刷盘
+		 */
+		VOLUMN,
+		/**
+		 * 每次缓冲区写出后都刷盘
+		 */
+		BUFFER
+	}
+
+	/**
+	 * 单个分卷的写入统计
+	 */
+	public static final class VolumnStat {
+		private final File file;
+		private final long size;
+		private final long crc;
+		private final long nanos;
+
+		VolumnStat(File file, long size, long crc, long nanos) {
+			this.file = file;
+			this.size = size;
+			this.crc = crc;
+			this.nanos = nanos;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @return 分卷内容的CRC32，写入时同步计算
+		 */
+		public long getCrc() {
+			return crc;
+		}
+
+		/**
+		 * @return 从开始写入到关闭完成的耗时(毫秒)
+		 */
+		public long getElapsedMillis() {
+			return nanos / 1000000L;
+		}
+
+		/**
+		 * @return 写入速度(字节/秒)
+		 */
+		public double getThroughput() {
+			return nanos == 0 ? 0 : size * 1000000000D / nanos;
+		}
+
+		@Override
+		public String toString() {
+			return file.getName() + " " + size + " bytes, crc32 " + Long.toHexString(crc) + ", in " + getElapsedMillis() + "ms (" + (long) (getThroughput() / 1024) + " KB/s)";
+		}
+	}
+
+	private static final class Volumn {
+		final int index;
+		final File file;
+		final RandomAccessFile raf;
+		final FileChannel channel;
+		final CRC32 crc = new CRC32();
+		long written;
+		long startNanos;
+
+		Volumn(int index, File file, RandomAccessFile raf) {
+			this.index = index;
+			this.file = file;
+			this.raf = raf;
+			this.channel = raf.getChannel();
+		}
+	}
+
+	private final File templateFile;
+	private final FileName names;
+	private final long volumnSize;
+	private final SyncPolicy syncPolicy;
+	private final ByteBuffer buffer;
+	private final ExecutorService executor;
+	private final List<Future<?>> pending = new ArrayList<Future<?>>();
+	private final List<VolumnStat> stats = Collections.synchronizedList(new ArrayList<VolumnStat>());
+	private final byte[] oneBuf = new byte[1];
+
+	private Volumn current;
+	private Future<Volumn> next;
+	private volatile File firstFile;
+	private long total;
+	private boolean manifest;
+	private boolean closed;
+
+	public ParallelVolumnOutputStream(File firstFile, long volumnSize) throws IOException {
+		this(firstFile, volumnSize, DEFAULT_BUFFER_SIZE, SyncPolicy.NONE);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param firstFile  输出文件
+	 * @param volumnSize 分卷大小，0表示不分卷
+	 * @param bufferSize 写缓冲区大小
+	 * @param syncPolicy 刷盘策略
+	 * @throws IOException
+	 */
+	public ParallelVolumnOutputStream(File firstFile, long volumnSize, int bufferSize, SyncPolicy syncPolicy) throws IOException {
+		Assert.isTrue(volumnSize >= 0, "volumn size must not be negative.");
+		Assert.isTrue(bufferSize > 0, "buffer size must be positive.");
+		this.templateFile = firstFile.getAbsoluteFile();
+		this.firstFile = firstFile;
+		this.names = FileName.valueOf(templateFile.getName());
+		this.volumnSize = volumnSize;
+		this.syncPolicy = syncPolicy == null ? SyncPolicy.NONE : syncPolicy;
+		this.buffer = ByteBuffer.allocate(volumnSize > 0 && volumnSize < bufferSize ? (int) volumnSize : bufferSize);
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "volumn-writer-" + templateFile.getName());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.current = openVolumn(1);
+		this.current.startNanos = System.nanoTime();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		oneBuf[0] = (byte) b;
+		write(oneBuf, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (volumnSize > 0 && current.written + buffer.position() >= volumnSize) {
+				switchNextVolumn();
+			}
+			int n = Math.min(len, buffer.remaining());
+			if (volumnSize > 0) {
+				n = (int) Math.min(n, volumnSize - current.written - buffer.position());
+			}
+			buffer.put(b, off, n);
+			off += n;
+			len -= n;
+			total += n;
+			if (!buffer.hasRemaining()) {
+				flushBuffer();
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		flushBuffer();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		IOException error = null;
+		for (Future<?> f : pending) {
+			try {
+				getQuietly(f);
+			} catch (IOException e) {
+				if (error == null)
+					error = e;
+			}
+		}
+		try {
+			flushBuffer();
+			finishVolumn(current, false);
+		} catch (IOException e) {
+			if (error == null)
+				error = e;
+		}
+		if (next != null) {
+			try {
+				Volumn unused = getQuietly(next);
+				IOUtils.closeQuietly(unused.raf);
+				unused.file.delete();
+			} catch (IOException e) {
+				// 未使用的分卷创建失败，忽略
+			}
+		}
+		executor.shutdown();
+		if (error != null)
+			throw error;
+		if (manifest) {
+			writeManifest();
+		}
+	}
+
+	/**
+	 * 设置关闭时是否写出分卷清单，清单文件见{@link VolumnManifest#getManifestFile(File)}
+	 *
+	 * @param manifest
+	 */
+	public void setManifest(boolean manifest) {
+		this.manifest = manifest;
+	}
+
+	/**
+	 * @return 第一卷文件。如果有分卷，必须在关闭流之后调用才能得到改名后的文件
+	 */
+	public File getFirstVolFile() {
+		return firstFile;
+	}
+
+	/**
+	 * @return 已写入的总字节数
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return 已完成的各分卷的写入统计
+	 */
+	public List<VolumnStat> getVolumnStats() {
+		synchronized (stats) {
+			return new ArrayList<VolumnStat>(stats);
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+	}
+
+	private void flushBuffer() throws IOException {
+		if (buffer.position() == 0)
+			return;
+		buffer.flip();
+		int len = buffer.remaining();
+		current.crc.update(buffer.array(), 0, len);
+		while (buffer.hasRemaining()) {
+			current.channel.write(buffer);
+		}
+		buffer.clear();
+		current.written += len;
+		if (syncPolicy == SyncPolicy.BUFFER) {
+			current.channel.force(false);
+		}
+		if (next == null && !closed && volumnSize > 0 && current.written > volumnSize / 2) {
+			prepareNext();
+		}
+	}
+
+	private void switchNextVolumn() throws IOException {
+		flushBuffer();
+		final Volumn done = current;
+		pending.add(executor.submit(new Callable<Void>() {
+			public Void call() throws IOException {
+				finishVolumn(done, done.index == 1);
+				return null;
+			}
+		}));
+		if (next == null) {
+			prepareNext();
+		}
+		Future<Volumn> f = next;
+		next = null;
+		current = getQuietly(f);
+		current.startNanos = System.nanoTime();
+	}
+
+	private void prepareNext() {
+		final int index = current.index + 1;
+		next = executor.submit(new Callable<Volumn>() {
+			public Volumn call() throws IOException {
+				return openVolumn(index);
+			}
+		});
+	}
+
+	private Volumn openVolumn(int index) throws IOException {
+		File file = index == 1 ? templateFile : names.append(".part" + index).asFileInDirectory(templateFile.getParentFile());
+		// 后续分卷只使用自己新建的文件，关闭时可能会删除它
+		if (index > 1 && !file.createNewFile())
+			throw new IOException("Volumn file already exists: " + file.getAbsolutePath());
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			// 预分配空间，关闭时截断到实际长度
+			raf.setLength(volumnSize);
+		} catch (IOException e) {
+			raf.close();
+			if (index > 1)
+				file.delete();
+			throw e;
+		}
+		return new Volumn(index, file, raf);
+	}
+
+	/*
+	 * @param renameFirst 出现了第二卷，第一卷需要改名
+	 */
+	private void finishVolumn(Volumn v, boolean renameFirst) throws IOException {
+		File file = v.file;
+		try {
+			v.raf.setLength(v.written);
+			if (syncPolicy != SyncPolicy.NONE) {
+				v.channel.force(true);
+			}
+		} finally {
+			v.raf.close();
+		}
+		if (renameFirst) {
+			String first = names.append(".part1").get();
+			file = IOUtils.rename(templateFile, first, true);
+			if (file == null)
+				throw new IOException("Can not rename file " + templateFile.getAbsolutePath() + " to " + first);
+			firstFile = file;
+		}
+		VolumnStat stat = new VolumnStat(file, v.written, v.crc.getValue(), System.nanoTime() - v.startNanos);
+		stats.add(stat);
+		if (log.isDebugEnabled())
+			log.debug("Volumn finished: {}", stat);
+	}
+
+	private void writeManifest() throws IOException {
+		VolumnManifest m = new VolumnManifest();
+		for (VolumnStat stat : getVolumnStats()) {
+			m.add(stat.getFile().getName(), stat.getSize(), stat.getCrc());
+		}
+		m.write(VolumnManifest.getManifestFile(templateFile));
+	}
+
+	private static <T> T getQuietly(Future<T> f) throws IOException {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for volumn writer", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException(cause);
+		}
+	}
+}
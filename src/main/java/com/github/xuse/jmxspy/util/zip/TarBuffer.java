@@ -112,6 +112,25 @@ public class TarBuffer {
 		}
 	}
 
+	/**
+	 * 读取一条记录到指定的数组中，不分配新的内存
+	 * @param record 目标数组
+	 * @param offset 写入位置，数组中从offset开始至少要有recordSize个字节的空间
+	 * @return 如果已经没有数据返回false
+	 * @throws IOException
+	 */
+	public boolean readRecord(byte record[], int offset) throws IOException {
+		if (debug)
+			System.err.println("ReadRecord: recIdx = " + currRecIdx + " blkIdx = " + currBlkIdx);
+		if (inStream == null)
+			throw new IOException("reading from an output buffer");
+		if (currRecIdx >= recsPerBlock && !readBlock())
+			return false;
+		System.arraycopy(blockBuffer, currRecIdx * recordSize, record, offset, recordSize);
+		currRecIdx++;
+		return true;
+	}
+
 	private boolean readBlock() throws IOException {
 		if (debug)
 			System.err.println("ReadBlock: blkIdx = " + currBlkIdx);
@@ -41,4 +41,8 @@ public interface TarConstants {
 	public static final String GNU_TMAGIC = "ustar  ";
 	public static final String GNU_LONGLINK = "././@LongLink";
 	public static final byte LF_GNUTYPE_LONGNAME = 76;
+	public static final byte LF_PAX_EXTENDED_HEADER = 120;
+	public static final byte LF_PAX_GLOBAL_EXTENDED_HEADER = 103;
+	public static final String PAX_HEADER_PREFIX = "./PaxHeaders.X/";
+	public static final int PREFIXLEN = 155;
 }
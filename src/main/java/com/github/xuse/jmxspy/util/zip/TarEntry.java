@@ -17,9 +17,16 @@ package com.github.xuse.jmxspy.util.zip;
 
 import java.io.File;
 import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 //Referenced classes of package org.apache.tools.tar:
 //         TarConstants, TarUtils
@@ -51,7 +58,7 @@ public class TarEntry implements TarConstants {
 		userId = 0;
 		groupId = 0;
 		size = 0L;
-		modTime = (new Date()).getTime() / 1000L;
+		modTime = System.currentTimeMillis();
 		linkName = new StringBuffer("");
 		userName = new StringBuffer("");
 		groupName = new StringBuffer("");
@@ -95,7 +102,7 @@ public class TarEntry implements TarConstants {
 			linkFlag = 48;
 		}
 		size = file.length();
-		modTime = file.lastModified() / 1000L;
+		modTime = file.lastModified();
 		devMajor = 0;
 		devMinor = 0;
 	}
@@ -182,16 +189,19 @@ public class TarEntry implements TarConstants {
 		setGroupName(groupName);
 	}
 
+	/**
+	 * @param time 修改时间(毫秒)。普通条目头只保存到秒，PAX扩展头中保存到毫秒
+	 */
 	public void setModTime(long time) {
-		modTime = time / 1000L;
+		modTime = time;
 	}
 
 	public void setModTime(Date time) {
-		modTime = time.getTime() / 1000L;
+		modTime = time.getTime();
 	}
 
 	public Date getModTime() {
-		return new Date(modTime * 1000L);
+		return new Date(modTime);
 	}
 
 	public File getFile() {
@@ -214,6 +224,176 @@ public class TarEntry implements TarConstants {
 		return linkFlag == 76 && name.toString().equals("././@LongLink");
 	}
 
+	/**
+	 * @return 是否是PAX扩展头(包括全局扩展头)
+	 */
+	public boolean isPaxHeader() {
+		return linkFlag == LF_PAX_EXTENDED_HEADER || linkFlag == LF_PAX_GLOBAL_EXTENDED_HEADER;
+	}
+
+	public boolean isGlobalPaxHeader() {
+		return linkFlag == LF_PAX_GLOBAL_EXTENDED_HEADER;
+	}
+
+	/**
+	 * 判断名称是否放不进100字节的名称字段。纯ASCII的短名称直接判断，不产生额外的内存分配。
+	 * @return
+	 */
+	public boolean isLongName() {
+		int len = name.length();
+		if (len >= NAMELEN)
+			return true;
+		for (int i = 0; i < len; i++) {
+			if (name.charAt(i) >= 0x80) {
+				try {
+					return name.toString().getBytes(DEFAULT_NAME_ENCODING).length >= NAMELEN;
+				} catch (UnsupportedEncodingException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return 大小是否超出了八进制字段所能表示的范围(8G)
+	 */
+	public boolean isBigSize() {
+		return size > MAXSIZE;
+	}
+
+	/**
+	 * 生成PAX扩展头的键值对
+	 * @param withPath 是否包含完整路径
+	 * @param withSize 是否包含大小
+	 * @return
+	 */
+	public Map<String, String> getPaxHeaders(boolean withPath, boolean withSize) {
+		Map<String, String> headers = new LinkedHashMap<String, String>();
+		if (withPath)
+			headers.put("path", getName());
+		if (withSize)
+			headers.put("size", String.valueOf(size));
+		if (modTime % 1000L == 0) {
+			headers.put("mtime", String.valueOf(modTime / 1000L));
+		} else {
+			// 1970年以前为负数，如-1500毫秒写作-1.500
+			headers.put("mtime", BigDecimal.valueOf(modTime, 3).toPlainString());
+		}
+		return headers;
+	}
+
+	/**
+	 * 为当前条目生成PAX扩展头条目，名称为 ./PaxHeaders.X/文件名
+	 * @param headerSize 扩展头内容的字节数
+	 * @return
+	 */
+	public TarEntry createPaxHeaderEntry(int headerSize) {
+		String n = getName();
+		if (n.endsWith("/"))
+			n = n.substring(0, n.length() - 1);
+		n = n.substring(n.lastIndexOf('/') + 1);
+		if (n.length() > 64)
+			n = n.substring(0, 64);
+		TarEntry pax = new TarEntry(PAX_HEADER_PREFIX + n, LF_PAX_EXTENDED_HEADER);
+		pax.setSize(headerSize);
+		pax.modTime = modTime;
+		return pax;
+	}
+
+	/**
+	 * 写在条目之前的一条扩展记录：条目头和内容
+	 */
+	static final class ExtensionRecord {
+		final TarEntry header;
+		final byte[] data;
+
+		ExtensionRecord(TarEntry header, byte[] data) {
+			this.header = header;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * 按长文件名和大文件的写法，生成写出本条目之前需要先写出的扩展记录(PAX扩展头、GNU长文件名)。
+	 * {@link TarOutputStream}和{@link TarFileWriter}共用，写出器只负责依次写出。短名称、8G以内的条目没有扩展记录。
+	 * @param longFileMode 长文件名的写法，见{@link TarOutputStream#LONGFILE_ERROR}等
+	 * @param bigNumberMode 大文件的写法，见{@link TarOutputStream#BIGNUMBER_ERROR}等
+	 * @return 扩展记录，没有时为空列表
+	 * @throws UnsupportedEncodingException
+	 */
+	List<ExtensionRecord> getExtensionRecords(int longFileMode, int bigNumberMode) throws UnsupportedEncodingException {
+		boolean longName = isLongName();
+		boolean bigSize = !isDirectory() && isBigSize();
+		if (!longName && !bigSize)
+			return Collections.emptyList();
+		if (longName && longFileMode == TarOutputStream.LONGFILE_ERROR)
+			throw new RuntimeException("file name '" + getName() + "' is too long ( > " + NAMELEN + " bytes)");
+		if (bigSize && bigNumberMode == TarOutputStream.BIGNUMBER_ERROR)
+			throw new RuntimeException("entry '" + getName() + "' is too large ( > " + MAXSIZE + " bytes)");
+		List<ExtensionRecord> records = new ArrayList<ExtensionRecord>(2);
+		boolean paxPath = longName && longFileMode == TarOutputStream.LONGFILE_POSIX;
+		boolean paxSize = bigSize && bigNumberMode == TarOutputStream.BIGNUMBER_POSIX;
+		if (paxPath || paxSize) {
+			byte[] data = TarUtils.formatPaxHeaders(getPaxHeaders(paxPath, paxSize));
+			records.add(new ExtensionRecord(createPaxHeaderEntry(data.length), data));
+		}
+		if (longName && longFileMode == TarOutputStream.LONGFILE_GNU) {
+			byte[] name = getName().getBytes(DEFAULT_NAME_ENCODING);
+			// 以0结尾
+			byte[] data = Arrays.copyOf(name, name.length + 1);
+			TarEntry longLinkEntry = new TarEntry(GNU_LONGLINK, LF_GNUTYPE_LONGNAME);
+			longLinkEntry.setSize(data.length);
+			records.add(new ExtensionRecord(longLinkEntry, data));
+		}
+		return records;
+	}
+
+	/**
+	 * 写入归档后再读出时得到的修改时间：条目头只保存到秒，写了PAX扩展头时保留毫秒
+	 * @param records {@link #getExtensionRecords(int, int)}的结果
+	 * @return 修改时间(毫秒)
+	 */
+	long getArchivedModTime(List<ExtensionRecord> records) {
+		for (ExtensionRecord record : records) {
+			if (record.header.isPaxHeader())
+				return modTime;
+		}
+		return Math.floorDiv(modTime, 1000L) * 1000L;
+	}
+
+	/**
+	 * 使用PAX扩展头中的值覆盖条目头中的值
+	 * @param headers
+	 */
+	public void applyPaxHeaders(Map<String, String> headers) {
+		for (Map.Entry<String, String> e : headers.entrySet()) {
+			String key = e.getKey();
+			String value = e.getValue();
+			try {
+				if ("path".equals(key)) {
+					setName(value);
+				} else if ("linkpath".equals(key)) {
+					linkName = value;
+				} else if ("size".equals(key)) {
+					size = Long.parseLong(value);
+				} else if ("mtime".equals(key)) {
+					modTime = new BigDecimal(value).movePointRight(3).longValue();
+				} else if ("uid".equals(key)) {
+					userId = Integer.parseInt(value);
+				} else if ("gid".equals(key)) {
+					groupId = Integer.parseInt(value);
+				} else if ("uname".equals(key)) {
+					userName = value;
+				} else if ("gname".equals(key)) {
+					groupName = value;
+				}
+			} catch (NumberFormatException ex) {
+				throw new IllegalArgumentException("invalid PAX header " + key + "=" + value, ex);
+			}
+		}
+	}
+
 	public boolean isDirectory() {
 		if (file != null)
 			return file.isDirectory();
@@ -238,8 +418,16 @@ public class TarEntry implements TarConstants {
 		offset = TarUtils.getOctalBytes(mode, outbuf, offset, 8);
 		offset = TarUtils.getOctalBytes(userId, outbuf, offset, 8);
 		offset = TarUtils.getOctalBytes(groupId, outbuf, offset, 8);
-		offset = TarUtils.getLongOctalBytes(size, outbuf, offset, 12);
-		offset = TarUtils.getLongOctalBytes(modTime, outbuf, offset, 12);
+		if (size > MAXSIZE)
+			offset = TarUtils.getBinaryBytes(size, outbuf, offset, 12);
+		else
+			offset = TarUtils.getLongOctalBytes(size, outbuf, offset, 12);
+		long mtime = Math.floorDiv(modTime, 1000L);
+		// 1970年以前的时间只能用base-256表示
+		if (mtime < 0 || mtime > MAXSIZE)
+			offset = TarUtils.getBinaryBytes(mtime, outbuf, offset, 12);
+		else
+			offset = TarUtils.getLongOctalBytes(mtime, outbuf, offset, 12);
 		int csOffset = offset;
 		for (int c = 0; c < 8; c++)
 			outbuf[offset++] = 32;
@@ -265,9 +453,9 @@ public class TarEntry implements TarConstants {
 		offset += 8;
 		groupId = (int) TarUtils.parseOctal(header, offset, 8);
 		offset += 8;
-		size = TarUtils.parseOctal(header, offset, 12);
+		size = TarUtils.parseOctalOrBinary(header, offset, 12);
 		offset += 12;
-		modTime = TarUtils.parseOctal(header, offset, 12);
+		modTime = TarUtils.parseOctalOrBinary(header, offset, 12) * 1000L;
 		offset += 12;
 		offset += 8;
 		linkFlag = header[offset++];
@@ -282,6 +470,12 @@ public class TarEntry implements TarConstants {
 		devMajor = (int) TarUtils.parseOctal(header, offset, 8);
 		offset += 8;
 		devMinor = (int) TarUtils.parseOctal(header, offset, 8);
+		offset += 8;
+		// POSIX ustar格式的长名称被拆分为前缀和名称两部分(GNU格式在此位置存放其他信息)
+		if (header[262] == 0 && header[offset] != 0 && "ustar".contentEquals(magic)) {
+			CharSequence prefix = TarUtils.parseName(header, offset, PREFIXLEN);
+			name = prefix + "/" + name;
+		}
 	}
 	private CharSequence name;
 	private int mode;
@@ -0,0 +1,158 @@
+package com.github.xuse.jmxspy.util.zip;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 直接写入文件的tar打包器，适用于不压缩的tar输出。
+ * <p>
+ * 和{@link TarOutputStream}相比，条目头使用同一个512字节的缓冲区生成，文件内容通过{@link FileChannel#transferTo}
+ * 由内核直接拷贝到目标文件，不经过Java堆，对齐所需的填充也由本类直接写出。
+ * 打包大的日志和dump文件时吞吐量接近磁盘拷贝。
+ *
+ * @author Joey
+ */
+public class TarFileWriter implements Closeable {
+	private static final int RECORD_SIZE = TarBuffer.DEFAULT_RCDSIZE;
+	private static final int BLOCK_SIZE = TarBuffer.DEFAULT_BLKSIZE;
+
+	private final FileChannel channel;
+	private File target;
+	private final ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+	private final ByteBuffer zeros = ByteBuffer.allocate(BLOCK_SIZE);
+	private int longFileMode = TarOutputStream.LONGFILE_ERROR;
+	private int bigNumberMode = TarOutputStream.BIGNUMBER_STAR;
+	private boolean finished;
+	private TarIndex index;
+
+	public TarFileWriter(File target) throws IOException {
+		this(FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+		this.target = target;
+	}
+
+	public TarFileWriter(FileChannel channel) {
+		this.channel = channel;
+	}
+
+	public void setLongFileMode(int longFileMode) {
+		this.longFileMode = longFileMode;
+	}
+
+	/**
+	 * @see TarOutputStream#setBigNumberMode(int)
+	 */
+	public void setBigNumberMode(int bigNumberMode) {
+		this.bigNumberMode = bigNumberMode;
+	}
+
+	/**
+	 * 在写出时收集条目索引。如果是以文件构造的，{@link #finish()}时会写出旁路索引文件。
+	 * @param index 用于收集的索引对象，为null时不收集
+	 */
+	public void setIndex(TarIndex index) {
+		this.index = index;
+	}
+
+	public TarIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * 写入一个没有内容的条目(如文件夹)
+	 *
+	 * @param entry
+	 * @throws IOException
+	 */
+	public void putEntry(TarEntry entry) throws IOException {
+		writeHeader(entry);
+	}
+
+	/**
+	 * 写入一个文件条目，条目大小以entry.getSize()为准
+	 *
+	 * @param entry 条目
+	 * @param file  文件内容
+	 * @throws IOException
+	 */
+	public void putFile(TarEntry entry, File file) throws IOException {
+		long size = entry.getSize();
+		writeHeader(entry);
+		FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long pos = 0;
+			while (pos < size) {
+				long n = in.transferTo(pos, size - pos, channel);
+				if (n <= 0)
+					throw new IOException("entry '" + entry.getName() + "' closed at '" + pos + "' before the '" + size + "' bytes specified in the header were written");
+				pos += n;
+			}
+		} finally {
+			in.close();
+		}
+		pad(size);
+	}
+
+	/**
+	 * 写入两个EOF记录，并补齐到块边界。如果收集了索引，写出旁路索引文件。
+	 *
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (finished)
+			return;
+		finished = true;
+		writeZeros(RECORD_SIZE * 2);
+		int tail = (int) (channel.position() % BLOCK_SIZE);
+		if (tail > 0)
+			writeZeros(BLOCK_SIZE - tail);
+		if (index != null && target != null)
+			index.writeTo(target);
+	}
+
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void writeHeader(TarEntry entry) throws IOException {
+		List<TarEntry.ExtensionRecord> records = entry.getExtensionRecords(longFileMode, bigNumberMode);
+		for (TarEntry.ExtensionRecord record : records) {
+			writeRecord(record.header);
+			writeFully(ByteBuffer.wrap(record.data));
+			pad(record.data.length);
+		}
+		if (index != null)
+			index.add(entry.getName(), channel.position(), entry.isDirectory() ? 0L : entry.getSize(), entry.getArchivedModTime(records));
+		writeRecord(entry);
+	}
+
+	private void writeRecord(TarEntry entry) throws IOException {
+		entry.writeEntryHeader(header.array());
+		header.clear();
+		writeFully(header);
+	}
+
+	private void pad(long size) throws IOException {
+		int tail = (int) (size % RECORD_SIZE);
+		if (tail > 0)
+			writeZeros(RECORD_SIZE - tail);
+	}
+
+	private void writeZeros(int len) throws IOException {
+		zeros.clear().limit(len);
+		writeFully(zeros);
+	}
+
+	private void writeFully(ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining())
+			channel.write(buf);
+	}
+}
@@ -0,0 +1,139 @@
+package com.github.xuse.jmxspy.util.zip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+/**
+ * 在未压缩的tar文件上顺序扫描条目头，直接跳过数据部分，不读取文件内容。
+ * 所有读取都是基于位置的，多个线程可以共享同一个FileChannel。
+ *
+ * @author Joey
+ */
+public class TarHeaderScanner {
+	private static final int RECORD_SIZE = TarBuffer.DEFAULT_RCDSIZE;
+
+	private final FileChannel channel;
+	private final ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+	private long position;
+	private long headerOffset;
+	private long dataOffset;
+
+	public TarHeaderScanner(FileChannel channel) {
+		this(channel, 0);
+	}
+
+	/**
+	 * @param channel  tar文件
+	 * @param position 开始扫描的位置，必须是某个条目头的位置
+	 */
+	public TarHeaderScanner(FileChannel channel, long position) {
+		this.channel = channel;
+		this.position = position;
+	}
+
+	/**
+	 * @return 下一个条目，结束时返回null
+	 * @throws IOException
+	 */
+	public TarEntry next() throws IOException {
+		String longName = null;
+		Map<String, String> paxHeaders = null;
+		while (true) {
+			if (!readRecord(position))
+				return null;
+			byte[] buf = header.array();
+			if (isEOFRecord(buf))
+				return null;
+			TarEntry entry = new TarEntry(buf);
+			headerOffset = position;
+			dataOffset = position + RECORD_SIZE;
+			if (entry.isGNULongNameEntry()) {
+				byte[] data = readData(dataOffset, entry.getSize());
+				int len = data.length;
+				while (len > 0 && data[len - 1] == 0)
+					len--;
+				longName = new String(data, 0, len, TarEntry.DEFAULT_NAME_ENCODING);
+				position = nextHeader(dataOffset, entry.getSize());
+				continue;
+			}
+			if (entry.isPaxHeader()) {
+				byte[] data = readData(dataOffset, entry.getSize());
+				if (!entry.isGlobalPaxHeader())
+					paxHeaders = TarUtils.parsePaxHeaders(data, data.length);
+				position = nextHeader(dataOffset, entry.getSize());
+				continue;
+			}
+			if (paxHeaders != null) {
+				entry.applyPaxHeaders(paxHeaders);
+			}
+			if (longName != null) {
+				entry.setName(longName);
+			}
+			position = nextHeader(dataOffset, entry.getSize());
+			return entry;
+		}
+	}
+
+	/**
+	 * 读取指定位置的条目头
+	 *
+	 * @param offset 条目头的位置
+	 * @return
+	 * @throws IOException
+	 */
+	public TarEntry readEntry(long offset) throws IOException {
+		if (!readRecord(offset))
+			throw new IOException("unexpected EOF at " + offset);
+		headerOffset = offset;
+		dataOffset = offset + RECORD_SIZE;
+		return new TarEntry(header.array());
+	}
+
+	/**
+	 * @return 最近一次返回的条目头所在位置
+	 */
+	public long getHeaderOffset() {
+		return headerOffset;
+	}
+
+	/**
+	 * @return 最近一次返回的条目数据所在位置
+	 */
+	public long getDataOffset() {
+		return dataOffset;
+	}
+
+	private boolean readRecord(long pos) throws IOException {
+		header.clear();
+		while (header.hasRemaining()) {
+			int n = channel.read(header, pos + header.position());
+			if (n == -1)
+				return false;
+		}
+		return true;
+	}
+
+	private static long nextHeader(long dataOffset, long size) {
+		return dataOffset + (size + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+	}
+
+	private byte[] readData(long pos, long size) throws IOException {
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("extended header at " + pos + " is too large: " + size);
+		ByteBuffer data = ByteBuffer.allocate((int) size);
+		while (data.hasRemaining()) {
+			if (channel.read(data, pos + data.position()) == -1)
+				throw new IOException("unexpected EOF in extended header entry");
+		}
+		return data.array();
+	}
+
+	private static boolean isEOFRecord(byte[] record) {
+		for (int i = 0; i < record.length; i++)
+			if (record[i] != 0)
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,308 @@
+package com.github.xuse.jmxspy.util.zip;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.xuse.jmxspy.util.IOUtils;
+
+/**
+ * tar文件的条目索引：条目名 → 条目头位置、大小、修改时间。
+ * <p>
+ * 索引以旁路文件(tar文件名 + {@link #SUFFIX})的形式保存，由{@link TarOutputStream}或{@link TarFileWriter}在结束时写出。
+ * 对于未压缩的tar文件，通过索引可以直接定位到单个条目读取，无须从头扫描整个文件。
+ * 索引不存在时可以用{@link #scan(File)}扫描条目头生成(只读条目头，不读数据)。
+ * 压缩的tar.gz无法随机定位，仍需顺序读取。
+ *
+ * @author Joey
+ */
+public class TarIndex {
+	/**
+	 * 旁路索引文件的后缀
+	 */
+	public static final String SUFFIX = ".idx";
+
+	private static final int MAGIC = 0x54494458; // TIDX
+	private static final int VERSION = 1;
+
+	private final Map<String, Item> items = new LinkedHashMap<String, Item>();
+
+	/**
+	 * 索引条目
+	 */
+	public static final class Item {
+		private final String name;
+		private final long headerOffset;
+		private final long size;
+		private final long modTime;
+
+		Item(String name, long headerOffset, long size, long modTime) {
+			this.name = name;
+			this.headerOffset = headerOffset;
+			this.size = size;
+			this.modTime = modTime;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return 条目头在tar文件中的位置
+		 */
+		public long getHeaderOffset() {
+			return headerOffset;
+		}
+
+		/**
+		 * @return 条目数据在tar文件中的位置
+		 */
+		public long getDataOffset() {
+			return headerOffset + TarBuffer.DEFAULT_RCDSIZE;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @return 修改时间(毫秒)
+		 */
+		public long getModTime() {
+			return modTime;
+		}
+
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+	}
+
+	/**
+	 * 添加条目
+	 *
+	 * @param name         条目名
+	 * @param headerOffset 条目头位置
+	 * @param size         大小
+	 * @param modTime      修改时间(毫秒)
+	 */
+	public void add(String name, long headerOffset, long size, long modTime) {
+		items.put(name, new Item(name, headerOffset, size, modTime));
+	}
+
+	/**
+	 * @param name 条目名
+	 * @return 条目，不存在时返回null
+	 */
+	public Item get(String name) {
+		return items.get(name);
+	}
+
+	public Collection<Item> getItems() {
+		return items.values();
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	/**
+	 * 写出索引
+	 *
+	 * @param out 输出流，不会被关闭
+	 * @throws IOException
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+		dout.writeInt(MAGIC);
+		dout.writeInt(VERSION);
+		dout.writeInt(items.size());
+		for (Item item : items.values()) {
+			dout.writeUTF(item.name);
+			dout.writeLong(item.headerOffset);
+			dout.writeLong(item.size);
+			dout.writeLong(item.modTime);
+		}
+		dout.flush();
+	}
+
+	/**
+	 * 读取索引
+	 *
+	 * @param in 输入流，不会被关闭
+	 * @return
+	 * @throws IOException
+	 */
+	public static TarIndex read(InputStream in) throws IOException {
+		DataInputStream din = new DataInputStream(new BufferedInputStream(in));
+		if (din.readInt() != MAGIC)
+			throw new IOException("not a tar index.");
+		int version = din.readInt();
+		if (version != VERSION)
+			throw new IOException("unsupported tar index version " + version);
+		int count = din.readInt();
+		TarIndex index = new TarIndex();
+		for (int i = 0; i < count; i++) {
+			index.add(din.readUTF(), din.readLong(), din.readLong(), din.readLong());
+		}
+		return index;
+	}
+
+	/**
+	 * @param tarFile tar文件
+	 * @return 旁路索引文件
+	 */
+	public static File getIndexFile(File tarFile) {
+		return new File(tarFile.getPath() + SUFFIX);
+	}
+
+	/**
+	 * 将索引写入tar文件的旁路索引文件
+	 *
+	 * @param tarFile tar文件
+	 * @throws IOException
+	 */
+	public void writeTo(File tarFile) throws IOException {
+		OutputStream out = new FileOutputStream(getIndexFile(tarFile));
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * 读取tar文件的旁路索引
+	 *
+	 * @param tarFile tar文件
+	 * @return 索引，如果旁路索引文件不存在或已经过期(比tar文件旧)返回null
+	 * @throws IOException
+	 */
+	public static TarIndex load(File tarFile) throws IOException {
+		File indexFile = getIndexFile(tarFile);
+		if (!indexFile.isFile() || indexFile.lastModified() < tarFile.lastModified())
+			return null;
+		InputStream in = new FileInputStream(indexFile);
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 扫描未压缩的tar文件的条目头生成索引
+	 *
+	 * @param tarFile tar文件
+	 * @return
+	 * @throws IOException
+	 */
+	public static TarIndex scan(File tarFile) throws IOException {
+		FileChannel channel = FileChannel.open(tarFile.toPath(), StandardOpenOption.READ);
+		try {
+			TarIndex index = new TarIndex();
+			TarHeaderScanner scanner = new TarHeaderScanner(channel);
+			TarEntry entry;
+			while ((entry = scanner.next()) != null) {
+				index.add(entry.getName(), scanner.getHeaderOffset(), entry.getSize(), entry.getModTime().getTime());
+			}
+			return index;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * 获得tar文件的索引，优先使用旁路索引文件，不存在时扫描生成
+	 *
+	 * @param tarFile 未压缩的tar文件
+	 * @return
+	 * @throws IOException
+	 */
+	public static TarIndex of(File tarFile) throws IOException {
+		TarIndex index = null;
+		try {
+			index = load(tarFile);
+		} catch (IOException e) {
+			// 索引文件损坏，重新扫描
+		}
+		return index == null ? scan(tarFile) : index;
+	}
+
+	/**
+	 * 将单个条目直接解压到文件
+	 *
+	 * @param tarFile 未压缩的tar文件
+	 * @param name    条目名
+	 * @param target  目标文件
+	 * @return 条目不存在返回false
+	 * @throws IOException
+	 */
+	public boolean extract(File tarFile, String name, File target) throws IOException {
+		Item item = items.get(name);
+		if (item == null)
+			return false;
+		if (item.isDirectory()) {
+			IOUtils.createFolder(target);
+			return true;
+		}
+		IOUtils.ensureParentFolder(target);
+		FileChannel in = FileChannel.open(tarFile.toPath(), StandardOpenOption.READ);
+		try {
+			FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				long pos = 0;
+				while (pos < item.size) {
+					long n = in.transferTo(item.getDataOffset() + pos, item.size - pos, out);
+					if (n <= 0)
+						throw new IOException("unexpected EOF with " + (item.size - pos) + " bytes unread for " + name);
+					pos += n;
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+		return true;
+	}
+
+	/**
+	 * 读取单个条目的内容到内存
+	 *
+	 * @param tarFile 未压缩的tar文件
+	 * @param name    条目名
+	 * @return 条目不存在返回null
+	 * @throws IOException
+	 */
+	public byte[] readBytes(File tarFile, String name) throws IOException {
+		Item item = items.get(name);
+		if (item == null)
+			return null;
+		if (item.size > Integer.MAX_VALUE)
+			throw new IOException("entry '" + name + "' is too large to read into memory.");
+		ByteBuffer buf = ByteBuffer.allocate((int) item.size);
+		FileChannel in = FileChannel.open(tarFile.toPath(), StandardOpenOption.READ);
+		try {
+			while (buf.hasRemaining()) {
+				if (in.read(buf, item.getDataOffset() + buf.position()) == -1)
+					throw new IOException("unexpected EOF with " + buf.remaining() + " bytes unread for " + name);
+			}
+		} finally {
+			in.close();
+		}
+		return buf.array();
+	}
+}
@@ -19,6 +19,9 @@ import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Map;
+
+import com.github.xuse.jmxspy.util.BufferPool;
 
 public class TarInputStream extends FilterInputStream {
 	public TarInputStream(InputStream is) {
@@ -32,7 +35,10 @@ public class TarInputStream extends FilterInputStream {
 	public TarInputStream(InputStream is, int blockSize, int recordSize) {
 		super(is);
 		buffer = new TarBuffer(is, blockSize, recordSize);
-		readBuf = null;
+		readBuf = new byte[recordSize];
+		readBufPos = 0;
+		readBufLen = 0;
+		headerBuf = new byte[recordSize];
 		oneBuf = new byte[1];
 		debug = false;
 		hasHitEOF = false;
@@ -53,18 +59,23 @@ public class TarInputStream extends FilterInputStream {
 	}
 
 	public int available() throws IOException {
-		return entrySize - entryOffset;
+		long left = entrySize - entryOffset;
+		return left > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) left;
 	}
 
 	public long skip(long numToSkip) throws IOException {
-		byte skipBuf[] = new byte[8192];
+		byte skipBuf[] = BufferPool.DEFAULT.borrow();
 		long skip;
 		int numRead;
-		for (skip = numToSkip; skip > 0L; skip -= numRead) {
-			int realSkip = (int) (skip <= (long) skipBuf.length ? skip : skipBuf.length);
-			numRead = read(skipBuf, 0, realSkip);
-			if (numRead == -1)
-				break;
+		try {
+			for (skip = numToSkip; skip > 0L; skip -= numRead) {
+				int realSkip = (int) (skip <= (long) skipBuf.length ? skip : skipBuf.length);
+				numRead = read(skipBuf, 0, realSkip);
+				if (numRead == -1)
+					break;
+			}
+		} finally {
+			BufferPool.DEFAULT.release(skipBuf);
 		}
 		return numToSkip - skip;
 	}
@@ -81,15 +92,14 @@ public class TarInputStream extends FilterInputStream {
 		if (hasHitEOF)
 			return null;
 		if (currEntry != null) {
-			int numToSkip = entrySize - entryOffset;
+			long numToSkip = entrySize - entryOffset;
 			if (debug)
 				System.err.println("TarInputStream: SKIP currENTRY '" + currEntry.getName() + "' SZ " + entrySize + " OFF " + entryOffset + "  skipping " + numToSkip + " bytes");
 			if (numToSkip > 0)
 				skip(numToSkip);
-			readBuf = null;
+			readBufLen = 0;
 		}
-		byte headerBuf[] = buffer.readRecord();
-		if (headerBuf == null) {
+		if (!buffer.readRecord(headerBuf, 0)) {
 			if (debug)
 				System.err.println("READ NULL RECORD");
 			hasHitEOF = true;
@@ -107,21 +117,44 @@ public class TarInputStream extends FilterInputStream {
 			if (debug)
 				System.err.println("TarInputStream: SET CURRENTRY '" + currEntry.getName() + "' size = " + currEntry.getSize());
 			entryOffset = 0;
-			entrySize = (int) currEntry.getSize();
+			entrySize = currEntry.getSize();
 		}
 		if (currEntry != null && currEntry.isGNULongNameEntry()) {
-			StringBuffer longName = new StringBuffer();
-			byte buf[] = new byte[256];
-			for (int length = 0; (length = read(buf)) >= 0;)
-				longName.append(new String(buf, 0, length,TarEntry.DEFAULT_NAME_ENCODING));
-			getNextEntry();
-			if (longName.length() > 0 && longName.charAt(longName.length() - 1) == 0)
-				longName.deleteCharAt(longName.length() - 1);
-			currEntry.setName(longName.toString());
+			byte data[] = readEntryData();
+			int len = data.length;
+			while (len > 0 && data[len - 1] == 0)
+				len--;
+			String longName = new String(data, 0, len, TarEntry.DEFAULT_NAME_ENCODING);
+			if (getNextEntry() != null)
+				currEntry.setName(longName);
+		} else if (currEntry != null && currEntry.isPaxHeader()) {
+			boolean global = currEntry.isGlobalPaxHeader();
+			byte data[] = readEntryData();
+			Map<String, String> headers = TarUtils.parsePaxHeaders(data, data.length);
+			if (getNextEntry() != null && !global) {
+				currEntry.applyPaxHeaders(headers);
+				entrySize = currEntry.getSize();
+			}
 		}
 		return currEntry;
 	}
 
+	/*
+	 * 读取当前条目(扩展头)的全部内容
+	 */
+	private byte[] readEntryData() throws IOException {
+		if (entrySize > Integer.MAX_VALUE)
+			throw new IOException("extended header '" + currEntry.getName() + "' is too large: " + entrySize);
+		byte data[] = new byte[(int) entrySize];
+		int off = 0;
+		int n;
+		while (off < data.length && (n = read(data, off, data.length - off)) != -1)
+			off += n;
+		if (off < data.length)
+			throw new IOException("unexpected EOF with " + (data.length - off) + " bytes unread");
+		return data;
+	}
+
 	public int read() throws IOException {
 		int num = read(oneBuf, 0, 1);
 		return num != -1 ? oneBuf[0] & 255 : -1;
@@ -132,35 +165,30 @@ public class TarInputStream extends FilterInputStream {
 		if (entryOffset >= entrySize)
 			return -1;
 		if (numToRead + entryOffset > entrySize)
-			numToRead = entrySize - entryOffset;
-		if (readBuf != null) {
-			int sz = numToRead <= readBuf.length ? numToRead : readBuf.length;
-			System.arraycopy(readBuf, 0, buf, offset, sz);
-			if (sz >= readBuf.length) {
-				readBuf = null;
-			} else {
-				int newLen = readBuf.length - sz;
-				byte newBuf[] = new byte[newLen];
-				System.arraycopy(readBuf, sz, newBuf, 0, newLen);
-				readBuf = newBuf;
-			}
+			numToRead = (int) (entrySize - entryOffset);
+		if (readBufLen > 0) {
+			int sz = numToRead <= readBufLen ? numToRead : readBufLen;
+			System.arraycopy(readBuf, readBufPos, buf, offset, sz);
+			readBufPos += sz;
+			readBufLen -= sz;
 			totalRead += sz;
 			numToRead -= sz;
 			offset += sz;
 		}
+		int recLen = readBuf.length;
 		while (numToRead > 0) {
-			byte rec[] = buffer.readRecord();
-			if (rec == null)
-				throw new IOException("unexpected EOF with " + numToRead + " bytes unread");
 			int sz = numToRead;
-			int recLen = rec.length;
-			if (recLen > sz) {
-				System.arraycopy(rec, 0, buf, offset, sz);
-				readBuf = new byte[recLen - sz];
-				System.arraycopy(rec, sz, readBuf, 0, recLen - sz);
-			} else {
+			if (sz >= recLen) {
+				// 整条记录直接读入调用者的数组
+				if (!buffer.readRecord(buf, offset))
+					throw new IOException("unexpected EOF with " + numToRead + " bytes unread");
 				sz = recLen;
-				System.arraycopy(rec, 0, buf, offset, recLen);
+			} else {
+				if (!buffer.readRecord(readBuf, 0))
+					throw new IOException("unexpected EOF with " + numToRead + " bytes unread");
+				System.arraycopy(readBuf, 0, buf, offset, sz);
+				readBufPos = sz;
+				readBufLen = recLen - sz;
 			}
 			totalRead += sz;
 			numToRead -= sz;
@@ -171,20 +199,23 @@ public class TarInputStream extends FilterInputStream {
 	}
 
 	public void copyEntryContents(OutputStream out) throws IOException {
-		byte buf[] = new byte[32768];
-		do {
-			int numRead = read(buf, 0, buf.length);
-			if (numRead != -1)
+		byte buf[] = BufferPool.DEFAULT.borrow();
+		try {
+			int numRead;
+			while ((numRead = read(buf, 0, buf.length)) != -1)
 				out.write(buf, 0, numRead);
-			else
-				return;
-		} while (true);
+		} finally {
+			BufferPool.DEFAULT.release(buf);
+		}
 	}
 	protected boolean debug;
 	protected boolean hasHitEOF;
-	protected int entrySize;
-	protected int entryOffset;
+	protected long entrySize;
+	protected long entryOffset;
 	protected byte readBuf[];
+	protected int readBufPos;
+	protected int readBufLen;
+	protected byte headerBuf[];
 	protected TarBuffer buffer;
 	protected TarEntry currEntry;
 	protected boolean v7Format;
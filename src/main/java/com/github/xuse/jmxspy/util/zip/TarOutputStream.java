@@ -18,6 +18,7 @@ package com.github.xuse.jmxspy.util.zip;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
 
 // Referenced classes of package org.apache.tools.tar:
 //            TarBuffer, TarEntry
@@ -32,7 +33,8 @@ public class TarOutputStream extends FilterOutputStream {
 
 	public TarOutputStream(OutputStream os, int blockSize, int recordSize) {
 		super(os);
-		longFileMode = 0;
+		longFileMode = LONGFILE_ERROR;
+		bigNumberMode = BIGNUMBER_STAR;
 		closed = false;
 		buffer = new TarBuffer(os, blockSize, recordSize);
 		debug = false;
@@ -54,9 +56,35 @@ public class TarOutputStream extends FilterOutputStream {
 		buffer.setDebug(debug);
 	}
 
+	/**
+	 * 在写出时收集条目索引
+	 * @param index 用于收集的索引对象，为null时不收集
+	 */
+	public void setIndex(TarIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * 在{@link #finish()}时将条目索引写入指定的流(不会关闭该流)
+	 * @param indexOut
+	 */
+	public void setIndexOutput(OutputStream indexOut) {
+		this.indexOut = indexOut;
+		if (index == null)
+			index = new TarIndex();
+	}
+
+	public TarIndex getIndex() {
+		return index;
+	}
+
 	public void finish() throws IOException {
 		writeEOFRecord();
 		writeEOFRecord();
+		if (indexOut != null) {
+			index.write(indexOut);
+			indexOut = null;
+		}
 	}
 
 	public void close() throws IOException {
@@ -72,19 +100,22 @@ public class TarOutputStream extends FilterOutputStream {
 		return buffer.getRecordSize();
 	}
 
+	/**
+	 * 设置超过8G的文件大小的写法
+	 * @param bigNumberMode {@link #BIGNUMBER_ERROR}, {@link #BIGNUMBER_STAR}或{@link #BIGNUMBER_POSIX}
+	 */
+	public void setBigNumberMode(int bigNumberMode) {
+		this.bigNumberMode = bigNumberMode;
+	}
+
 	public void putNextEntry(TarEntry entry) throws IOException {
-		if (entry.getName().length() >= 100)
-			if (longFileMode == 2) {
-				TarEntry longLinkEntry = new TarEntry("././@LongLink", (byte) 76);
-				longLinkEntry.setSize(entry.getName().length() + 1);
-				putNextEntry(longLinkEntry);
-				write(entry.getName().getBytes());
-				write(0);
-				closeEntry();
-			} else if (longFileMode != 1)
-				throw new RuntimeException("file name '" + entry.getName() + "' is too long ( > " + 100 + " bytes)");
+		List<TarEntry.ExtensionRecord> records = null;
+		if (!entry.isPaxHeader() && !entry.isGNULongNameEntry())
+			records = writeExtendedHeaders(entry);
 		entry.writeEntryHeader(recordBuf);
-		buffer.writeRecord(recordBuf);
+		if (index != null && records != null)
+			index.add(entry.getName(), recordCount * recordBuf.length, entry.isDirectory() ? 0L : entry.getSize(), entry.getArchivedModTime(records));
+		writeRecord(recordBuf);
 		currBytes = 0L;
 		if (entry.isDirectory())
 			currSize = 0L;
@@ -93,11 +124,24 @@ public class TarOutputStream extends FilterOutputStream {
 		currName = entry.getName();
 	}
 
+	/*
+	 * 短名称、8G以内的条目不做任何额外处理
+	 */
+	private List<TarEntry.ExtensionRecord> writeExtendedHeaders(TarEntry entry) throws IOException {
+		List<TarEntry.ExtensionRecord> records = entry.getExtensionRecords(longFileMode, bigNumberMode);
+		for (TarEntry.ExtensionRecord record : records) {
+			putNextEntry(record.header);
+			write(record.data);
+			closeEntry();
+		}
+		return records;
+	}
+
 	public void closeEntry() throws IOException {
 		if (assemLen > 0) {
 			for (int i = assemLen; i < assemBuf.length; i++)
 				assemBuf[i] = 0;
-			buffer.writeRecord(assemBuf);
+			writeRecord(assemBuf);
 			currBytes += assemLen;
 			assemLen = 0;
 		}
@@ -124,7 +168,7 @@ public class TarOutputStream extends FilterOutputStream {
 				int aLen = recordBuf.length - assemLen;
 				System.arraycopy(assemBuf, 0, recordBuf, 0, assemLen);
 				System.arraycopy(wBuf, wOffset, recordBuf, assemLen, aLen);
-				buffer.writeRecord(recordBuf);
+				writeRecord(recordBuf);
 				currBytes += recordBuf.length;
 				wOffset += aLen;
 				numToWrite -= aLen;
@@ -144,6 +188,7 @@ public class TarOutputStream extends FilterOutputStream {
 				break;
 			}
 			buffer.writeRecord(wBuf, wOffset);
+			recordCount++;
 			int num = recordBuf.length;
 			currBytes += num;
 			numToWrite -= num;
@@ -154,11 +199,20 @@ public class TarOutputStream extends FilterOutputStream {
 	private void writeEOFRecord() throws IOException {
 		for (int i = 0; i < recordBuf.length; i++)
 			recordBuf[i] = 0;
-		buffer.writeRecord(recordBuf);
+		writeRecord(recordBuf);
+	}
+
+	private void writeRecord(byte record[]) throws IOException {
+		buffer.writeRecord(record);
+		recordCount++;
 	}
 	public static final int LONGFILE_ERROR = 0;
 	public static final int LONGFILE_TRUNCATE = 1;
 	public static final int LONGFILE_GNU = 2;
+	public static final int LONGFILE_POSIX = 3;
+	public static final int BIGNUMBER_ERROR = 0;
+	public static final int BIGNUMBER_STAR = 1;
+	public static final int BIGNUMBER_POSIX = 2;
 	protected boolean debug;
 	protected long currSize;
 	protected String currName;
@@ -169,6 +223,10 @@ public class TarOutputStream extends FilterOutputStream {
 	protected byte assemBuf[];
 	protected TarBuffer buffer;
 	protected int longFileMode;
+	protected int bigNumberMode;
+	protected long recordCount;
+	protected TarIndex index;
+	protected OutputStream indexOut;
 	private boolean closed;
 }
 /*
@@ -15,9 +15,12 @@
  */
 package com.github.xuse.jmxspy.util.zip;
 
+import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import org.apache.commons.lang3.ArrayUtils;
+import com.github.xuse.jmxspy.util.StringUtils;
 
 public class TarUtils {
 	public TarUtils() {}
@@ -41,10 +44,26 @@ public class TarUtils {
 		return result;
 	}
 
+	/**
+	 * 解析数字字段，支持八进制和GNU的base-256(首字节最高位为1)两种编码。
+	 * base-256是补码，首字节的0x40位为符号位，如1970年以前的mtime首字节为0xff
+	 */
+	public static long parseOctalOrBinary(byte header[], int offset, int length) {
+		if ((header[offset] & 0x80) == 0)
+			return parseOctal(header, offset, length);
+		// 去掉标志位后按7位有符号数扩展
+		long result = (byte) (header[offset] << 1) >> 1;
+		for (int i = 1; i < length; i++)
+			result = (result << 8) | (header[offset + i] & 0xff);
+		return result;
+	}
+
 	public static CharSequence parseName(byte header[], int offset, int length) {
-		int len=ArrayUtils.indexOf(header, (byte)0);
+		int len = 0;
+		while (len < length && header[offset + len] != 0)
+			len++;
 		try {
-			return new String(header,offset,Math.min(len, length),TarEntry.DEFAULT_NAME_ENCODING);
+			return new String(header,offset,len,TarEntry.DEFAULT_NAME_ENCODING);
 		} catch (UnsupportedEncodingException e) {
 			throw new RuntimeException(e);
 		}
@@ -80,12 +99,84 @@ public class TarUtils {
 	}
 
 	public static int getLongOctalBytes(long value, byte buf[], int offset, int length) {
-		byte temp[] = new byte[length + 1];
-		getOctalBytes(value, temp, 0, length + 1);
-		System.arraycopy(temp, 0, buf, offset, length);
+		int idx = length - 1;
+		buf[offset + idx] = 32;
+		idx--;
+		if (value == 0L) {
+			buf[offset + idx] = 48;
+			idx--;
+		} else {
+			for (long val = value; idx >= 0 && val > 0L; idx--) {
+				buf[offset + idx] = (byte) (48 + (byte) (int) (val & 7L));
+				val >>= 3;
+			}
+		}
+		for (; idx >= 0; idx--)
+			buf[offset + idx] = 32;
+		return offset + length;
+	}
+
+	/**
+	 * 按GNU的base-256格式写入数字，用于超出八进制字段范围的大小(如超过8G的文件)
+	 */
+	public static int getBinaryBytes(long value, byte buf[], int offset, int length) {
+		boolean negative = value < 0;
+		for (int i = length - 1; i > 0; i--) {
+			buf[offset + i] = (byte) value;
+			value >>= 8;
+		}
+		buf[offset] = (byte) (negative ? 0xff : 0x80);
 		return offset + length;
 	}
 
+	/**
+	 * 生成PAX扩展头的内容，每条记录格式为 "长度 key=value\n"，长度包含其自身
+	 */
+	public static byte[] formatPaxHeaders(Map<String, String> headers) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (Map.Entry<String, String> e : headers.entrySet()) {
+			byte[] kv = (" " + e.getKey() + "=" + e.getValue() + "\n").getBytes(StringUtils.UTF8);
+			int len = kv.length + String.valueOf(kv.length).length();
+			if (String.valueOf(len).length() + kv.length > len)
+				len++;
+			byte[] prefix = String.valueOf(len).getBytes(StringUtils.UTF8);
+			out.write(prefix, 0, prefix.length);
+			out.write(kv, 0, kv.length);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 解析PAX扩展头的内容
+	 */
+	public static Map<String, String> parsePaxHeaders(byte data[], int length) {
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		int pos = 0;
+		while (pos < length) {
+			int recLen = 0;
+			int i = pos;
+			while (i < length && data[i] >= '0' && data[i] <= '9')
+				recLen = recLen * 10 + (data[i++] - '0');
+			if (i >= length || data[i] != ' ' || recLen <= 0 || pos + recLen > length)
+				break;
+			int start = i + 1;
+			int end = pos + recLen - 1; // 结尾的'\n'
+			int eq = start;
+			while (eq < end && data[eq] != '=')
+				eq++;
+			if (eq < end) {
+				String key = new String(data, start, eq - start, StringUtils.UTF8);
+				if (eq + 1 == end) {
+					result.remove(key);
+				} else {
+					result.put(key, new String(data, eq + 1, end - eq - 1, StringUtils.UTF8));
+				}
+			}
+			pos += recLen;
+		}
+		return result;
+	}
+
 	public static int getCheckSumOctalBytes(long value, byte buf[], int offset, int length) {
 		getOctalBytes(value, buf, offset, length);
 		buf[(offset + length) - 1] = 32;
@@ -3,12 +3,22 @@ package com.github.xuse.jmxspy.util.zip;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.regex.Pattern;
 
 import com.github.xuse.jmxspy.util.IOUtils;
 import com.github.xuse.jmxspy.util.StringUtils;
 import com.github.xuse.jmxspy.util.string.RegexpUtils;
 
 public final class VolumnChangeableInputStream extends AbstractVolchgInoputStream{
+	/**
+	 * 分卷文件名的格式，如 data.part1.zip
+	 */
+	public static final String VOLUMN_PATTERN = "(.*\\.part)(\\d{1,3})(\\.\\w+)";
+	/**
+	 * 编译好的{@link #VOLUMN_PATTERN}
+	 */
+	public static final Pattern VOLUMN = Pattern.compile(VOLUMN_PATTERN);
+
 	private File file;
 	
 	
@@ -23,7 +33,7 @@ public final class VolumnChangeableInputStream extends AbstractVolchgInoputStrea
 	
 	private void init() throws IOException {
 		String fName=file.getName();
-		String[] strs=RegexpUtils.getMatcherResult(fName, "(.*\\.part)(\\d{1,3})(\\.\\w+)", true);
+		String[] strs=RegexpUtils.getMatcherResult(fName, VOLUMN);
 		in=new FileInputStream(file);
 		if(strs!=null){
 			index=StringUtils.toInt(strs[1], 1);
@@ -0,0 +1,285 @@
+package com.github.xuse.jmxspy.util.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.xuse.jmxspy.util.Assert;
+import com.github.xuse.jmxspy.util.IOUtils;
+import com.github.xuse.jmxspy.util.StringUtils;
+import com.github.xuse.jmxspy.util.string.RegexpUtils;
+
+/**
+ * 将多个分卷文件(xxx.part1.ext, xxx.part2.ext ...)视为一个只读的、可随机定位的通道。
+ * <p>
+ * 根据各分卷的大小将逻辑位置换算为(分卷, 卷内位置)，使用FileChannel的定位读取，
+ * 定位到任意位置无须读取前面的分卷。分卷文件在首次访问时才打开。
+ * 开启{@link #setMemoryMapped(boolean)}后，不超过2G的分卷以内存映射方式读取。
+ * <p>
+ * {@link #read(ByteBuffer, long)}和{@link #newInputStream(long, long)}不修改通道的当前位置，可以由多个线程并发使用。
+ *
+ * @author Joey
+ */
+public class VolumnFileChannel implements SeekableByteChannel {
+	private final File[] files;
+	/**
+	 * 各分卷的起始位置，最后一个元素为总大小
+	 */
+	private final long[] starts;
+	private final FileChannel[] channels;
+	private final MappedByteBuffer[] maps;
+	private boolean memoryMapped;
+	private long position;
+	private volatile boolean open = true;
+
+	/**
+	 * 构造。如果文件名符合分卷格式并且是第一卷，自动查找后续的分卷，否则作为单个文件处理
+	 *
+	 * @param firstVolumn 第一卷文件
+	 * @throws IOException
+	 */
+	public VolumnFileChannel(File firstVolumn) throws IOException {
+		this(findVolumns(firstVolumn));
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param volumns 按顺序排列的全部分卷
+	 * @throws IOException
+	 */
+	public VolumnFileChannel(List<File> volumns) throws IOException {
+		Assert.isTrue(volumns != null && !volumns.isEmpty(), "volumns must not be empty.");
+		int n = volumns.size();
+		this.files = volumns.toArray(new File[n]);
+		this.starts = new long[n + 1];
+		for (int i = 0; i < n; i++) {
+			if (!files[i].isFile())
+				throw new IOException("volumn file " + files[i].getAbsolutePath() + " not exist.");
+			starts[i + 1] = starts[i] + files[i].length();
+		}
+		this.channels = new FileChannel[n];
+		this.maps = new MappedByteBuffer[n];
+	}
+
+	/**
+	 * 查找文件的全部分卷
+	 *
+	 * @param file 第一卷文件
+	 * @return 按顺序排列的分卷文件，非分卷文件时只包含其本身
+	 */
+	public static List<File> findVolumns(File file) {
+		List<File> result = new ArrayList<File>();
+		result.add(file);
+		String[] strs = RegexpUtils.getMatcherResult(file.getName(), VolumnChangeableInputStream.VOLUMN);
+		if (strs == null || StringUtils.toInt(strs[1], 1) != 1)
+			return result;
+		File parent = file.getAbsoluteFile().getParentFile();
+		for (int i = 2;; i++) {
+			File next = new File(parent, strs[0] + i + strs[2]);
+			if (!next.isFile())
+				break;
+			result.add(next);
+		}
+		return result;
+	}
+
+	/**
+	 * 设置是否使用内存映射读取分卷。超过2G的分卷始终使用定位读取。
+	 *
+	 * @param memoryMapped
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	public File[] getVolumns() {
+		return files.clone();
+	}
+
+	public int read(ByteBuffer dst) throws IOException {
+		int n = read(dst, position);
+		if (n > 0)
+			position += n;
+		return n;
+	}
+
+	/**
+	 * 从指定位置读取，不改变通道的当前位置
+	 *
+	 * @param dst 目标缓冲区
+	 * @param pos 逻辑位置
+	 * @return 读取的字节数，位置超过末尾时返回-1
+	 * @throws IOException
+	 */
+	public int read(ByteBuffer dst, long pos) throws IOException {
+		ensureOpen();
+		if (pos >= size())
+			return -1;
+		int total = 0;
+		int part = findVolumn(pos);
+		while (dst.hasRemaining() && part < files.length) {
+			long offset = pos - starts[part];
+			long left = starts[part + 1] - pos;
+			if (left <= 0) {
+				part++;
+				continue;
+			}
+			int n = readVolumn(part, dst, offset, left);
+			if (n <= 0)
+				break;
+			total += n;
+			pos += n;
+		}
+		return total;
+	}
+
+	/**
+	 * 得到一段区域的输入流，不改变通道的当前位置
+	 *
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return
+	 */
+	public InputStream newInputStream(final long offset, final long length) {
+		return new InputStream() {
+			private long pos = offset;
+			private final long end = offset + length;
+			private final byte[] one = new byte[1];
+
+			@Override
+			public int read() throws IOException {
+				return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len == 0)
+					return 0;
+				if (pos >= end)
+					return -1;
+				ByteBuffer buf = ByteBuffer.wrap(b, off, (int) Math.min(len, end - pos));
+				int n = VolumnFileChannel.this.read(buf, pos);
+				if (n > 0)
+					pos += n;
+				return n;
+			}
+
+			@Override
+			public long skip(long n) {
+				long skip = Math.max(0, Math.min(n, end - pos));
+				pos += skip;
+				return skip;
+			}
+
+			@Override
+			public int available() {
+				return (int) Math.min(Integer.MAX_VALUE, end - pos);
+			}
+		};
+	}
+
+	public int write(ByteBuffer src) throws IOException {
+		throw new NonWritableChannelException();
+	}
+
+	public long position() throws IOException {
+		ensureOpen();
+		return position;
+	}
+
+	public SeekableByteChannel position(long newPosition) throws IOException {
+		ensureOpen();
+		Assert.isTrue(newPosition >= 0, "position must not be negative.");
+		this.position = newPosition;
+		return this;
+	}
+
+	public long size() throws IOException {
+		return starts[files.length];
+	}
+
+	public SeekableByteChannel truncate(long size) throws IOException {
+		throw new NonWritableChannelException();
+	}
+
+	public boolean isOpen() {
+		return open;
+	}
+
+	public synchronized void close() throws IOException {
+		if (!open)
+			return;
+		open = false;
+		for (int i = 0; i < channels.length; i++) {
+			IOUtils.closeQuietly(channels[i]);
+			channels[i] = null;
+			maps[i] = null;
+		}
+	}
+
+	private int findVolumn(long pos) {
+		int i = Arrays.binarySearch(starts, pos);
+		if (i < 0)
+			return -i - 2;
+		// 跳过空的分卷
+		while (i < files.length - 1 && starts[i + 1] == pos)
+			i++;
+		return i;
+	}
+
+	private int readVolumn(int part, ByteBuffer dst, long offset, long left) throws IOException {
+		int len = (int) Math.min(dst.remaining(), left);
+		if (memoryMapped && starts[part + 1] - starts[part] <= Integer.MAX_VALUE) {
+			ByteBuffer map = getMap(part).duplicate();
+			map.position((int) offset).limit((int) offset + len);
+			dst.put(map);
+			return len;
+		}
+		FileChannel channel = getChannel(part);
+		if (len == dst.remaining())
+			return channel.read(dst, offset);
+		ByteBuffer slice = dst.duplicate();
+		slice.limit(dst.position() + len);
+		int n = channel.read(slice, offset);
+		if (n > 0)
+			dst.position(dst.position() + n);
+		return n;
+	}
+
+	private synchronized FileChannel getChannel(int part) throws IOException {
+		ensureOpen();
+		FileChannel channel = channels[part];
+		if (channel == null) {
+			channel = FileChannel.open(files[part].toPath(), StandardOpenOption.READ);
+			channels[part] = channel;
+		}
+		return channel;
+	}
+
+	private synchronized MappedByteBuffer getMap(int part) throws IOException {
+		MappedByteBuffer map = maps[part];
+		if (map == null) {
+			FileChannel channel = getChannel(part);
+			map = channel.map(MapMode.READ_ONLY, 0, starts[part + 1] - starts[part]);
+			maps[part] = map;
+		}
+		return map;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (!open)
+			throw new ClosedChannelException();
+	}
+}
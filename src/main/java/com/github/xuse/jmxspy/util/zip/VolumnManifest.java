@@ -0,0 +1,254 @@
+package com.github.xuse.jmxspy.util.zip;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import com.github.xuse.jmxspy.util.StringUtils;
+import com.github.xuse.jmxspy.util.string.RegexpUtils;
+
+/**
+ * 分卷清单：记录每一卷的文件名、大小和CRC32。
+ * <p>
+ * 由{@link ParallelVolumnOutputStream}在写入时同步计算，关闭时写出到 xxx.ext{@link #SUFFIX} 文件。
+ * 每行一卷，格式为 {@code 文件名<TAB>大小<TAB>CRC32(16进制)}，以#开头的行为注释。
+ * {@link #verifyManifest(File, int)}使用多个线程以定位读取的方式同时校验所有分卷，在开始耗时的解压之前即可发现损坏或缺失的分卷。
+ *
+ * @author Joey
+ */
+public class VolumnManifest {
+	/**
+	 * 清单文件的后缀
+	 */
+	public static final String SUFFIX = ".manifest";
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final List<Item> items = new ArrayList<Item>();
+
+	/**
+	 * 清单条目
+	 */
+	public static final class Item {
+		private final String name;
+		private final long size;
+		private final long crc;
+
+		Item(String name, long size, long crc) {
+			this.name = name;
+			this.size = size;
+			this.crc = crc;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getCrc() {
+			return crc;
+		}
+	}
+
+	public void add(String name, long size, long crc) {
+		items.add(new Item(name, size, crc));
+	}
+
+	public List<Item> getItems() {
+		return Collections.unmodifiableList(items);
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	/**
+	 * 得到清单文件。分卷文件 xxx.part1.ext 的清单为 xxx.ext{@link #SUFFIX}，其他文件为 文件名{@link #SUFFIX}
+	 *
+	 * @param file 分卷文件或输出的文件名
+	 * @return
+	 */
+	public static File getManifestFile(File file) {
+		String name = file.getName();
+		String[] strs = RegexpUtils.getMatcherResult(name, VolumnChangeableInputStream.VOLUMN);
+		if (strs != null) {
+			name = strs[0].substring(0, strs[0].length() - 5) + strs[2];
+		}
+		return new File(file.getAbsoluteFile().getParentFile(), name + SUFFIX);
+	}
+
+	/**
+	 * 写出清单
+	 *
+	 * @param file 清单文件
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StringUtils.UTF8));
+		try {
+			writer.write("# name\tsize\tcrc32\n");
+			for (Item item : items) {
+				writer.write(item.name);
+				writer.write('\t');
+				writer.write(String.valueOf(item.size));
+				writer.write('\t');
+				writer.write(String.format("%08x", item.crc));
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * 读取清单
+	 *
+	 * @param file 清单文件
+	 * @return
+	 * @throws IOException
+	 */
+	public static VolumnManifest read(File file) throws IOException {
+		VolumnManifest manifest = new VolumnManifest();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StringUtils.UTF8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() == 0 || line.charAt(0) == '#')
+					continue;
+				String[] fields = StringUtils.split(line, '\t');
+				if (fields.length != 3)
+					throw new IOException("invalid manifest line: " + line);
+				try {
+					manifest.add(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2], 16));
+				} catch (NumberFormatException e) {
+					throw new IOException("invalid manifest line: " + line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return manifest;
+	}
+
+	/**
+	 * 校验清单中的所有分卷，分卷文件和清单文件在同一个目录下
+	 *
+	 * @param manifestFile 清单文件
+	 * @param threads      线程数，小于等于0时使用CPU核数
+	 * @return 校验失败的说明，全部通过时返回空列表
+	 * @throws IOException 清单文件无法读取
+	 */
+	public static List<String> verifyManifest(File manifestFile, int threads) throws IOException {
+		return read(manifestFile).verify(manifestFile.getAbsoluteFile().getParentFile(), threads);
+	}
+
+	/**
+	 * 校验所有分卷
+	 *
+	 * @param dir     分卷所在目录
+	 * @param threads 线程数，小于等于0时使用CPU核数
+	 * @return 校验失败的说明，全部通过时返回空列表
+	 */
+	public List<String> verify(File dir, int threads) {
+		List<String> errors = new ArrayList<String>();
+		if (items.isEmpty())
+			return errors;
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		final AtomicInteger seq = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, items.size()), new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "verify-worker-" + seq.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>(items.size());
+			for (final Item item : items) {
+				final File file = new File(dir, item.name);
+				results.add(pool.submit(new Callable<String>() {
+					public String call() throws IOException {
+						return check(item, file);
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				String error;
+				try {
+					error = results.get(i).get();
+				} catch (ExecutionException e) {
+					error = items.get(i).name + ": " + e.getCause();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					errors.add("interrupted");
+					break;
+				}
+				if (error != null)
+					errors.add(error);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return errors;
+	}
+
+	private static String check(Item item, File file) throws IOException {
+		if (!file.isFile())
+			return item.name + ": missing";
+		if (file.length() != item.size)
+			return item.name + ": size " + file.length() + ", expected " + item.size;
+		long crc = crc32(file);
+		if (crc != item.crc)
+			return item.name + ": crc32 " + Long.toHexString(crc) + ", expected " + Long.toHexString(item.crc);
+		return null;
+	}
+
+	/**
+	 * 使用定位读取计算文件的CRC32
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static long crc32(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long pos = 0;
+			int n;
+			while ((n = channel.read(buf, pos)) != -1) {
+				pos += n;
+				buf.flip();
+				crc.update(buf);
+				buf.clear();
+			}
+		} finally {
+			channel.close();
+		}
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,217 @@
+package com.github.xuse.jmxspy.util.zip;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+import com.github.xuse.jmxspy.util.IOUtils;
+import com.github.xuse.jmxspy.util.StringUtils;
+
+/**
+ * 通过中央目录(central directory)读取zip文件，支持分卷(xxx.part1.zip ...)。
+ * <p>
+ * 先从末尾定位中央目录并读取全部条目，再根据条目记录的本地头位置直接读取单个条目。
+ * 底层使用{@link VolumnFileChannel}，从50个分卷的压缩包中取出一个文件时只需要读取该文件所在的分卷和中央目录所在的分卷。
+ * 不支持ZIP64和加密的压缩包。
+ *
+ * @author Joey
+ */
+public class VolumnZipFile implements Closeable, ZipConstants {
+	private static final int MAX_COMMENT = 0xFFFF;
+
+	private final VolumnFileChannel channel;
+	private final Map<String, Item> entries = new LinkedHashMap<String, Item>();
+
+	private static final class Item {
+		final ZipEntry entry;
+		final long localOffset;
+
+		Item(ZipEntry entry, long localOffset) {
+			this.entry = entry;
+			this.localOffset = localOffset;
+		}
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param file    zip文件，分卷时为第一卷
+	 * @param charSet 文件名编码，为null时使用{@link ZipOutputStream#DEFAULT_NAME_ENCODING}
+	 * @throws IOException
+	 */
+	public VolumnZipFile(File file, String charSet) throws IOException {
+		this.channel = new VolumnFileChannel(file);
+		try {
+			readCentralDirectory(Charset.forName(charSet == null ? ZipOutputStream.DEFAULT_NAME_ENCODING : charSet));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @see VolumnFileChannel#setMemoryMapped(boolean)
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		channel.setMemoryMapped(memoryMapped);
+	}
+
+	public Collection<ZipEntry> getEntries() {
+		Collection<ZipEntry> result = new ArrayList<ZipEntry>(entries.size());
+		for (Item item : entries.values())
+			result.add(item.entry);
+		return result;
+	}
+
+	/**
+	 * @param name 条目名
+	 * @return 条目，不存在时返回null
+	 */
+	public ZipEntry getEntry(String name) {
+		Item item = entries.get(name);
+		return item == null ? null : item.entry;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * 得到条目内容的输入流
+	 *
+	 * @param name 条目名
+	 * @return 条目不存在时返回null
+	 * @throws IOException
+	 */
+	public InputStream getInputStream(String name) throws IOException {
+		Item item = entries.get(name);
+		if (item == null)
+			return null;
+		ByteBuffer loc = readFully(item.localOffset, LOCHDR);
+		if (loc.getInt(0) != (int) LOCSIG)
+			throw new IOException("invalid LOC header for entry " + name);
+		long dataOffset = item.localOffset + LOCHDR + (loc.getShort(LOCNAM) & 0xFFFF) + (loc.getShort(LOCEXT) & 0xFFFF);
+		ZipEntry e = item.entry;
+		switch (e.getMethod()) {
+		case ZipEntry.STORED:
+			return channel.newInputStream(dataOffset, e.getSize());
+		case ZipEntry.DEFLATED:
+			final Inflater inf = new Inflater(true);
+			// 追加一个字节，nowrap模式的Inflater需要
+			InputStream in = new SequenceInputStream(channel.newInputStream(dataOffset, e.getCompressedSize()), new ByteArrayInputStream(new byte[1]));
+			return new InflaterInputStream(in, inf, 8192) {
+				private boolean closed;
+
+				@Override
+				public void close() throws IOException {
+					if (!closed) {
+						closed = true;
+						inf.end();
+						super.close();
+					}
+				}
+			};
+		default:
+			throw new IOException("unsupported compression method " + e.getMethod() + " for entry " + name);
+		}
+	}
+
+	/**
+	 * 将单个条目解压到文件
+	 *
+	 * @param name   条目名
+	 * @param target 目标文件
+	 * @return 条目不存在返回false
+	 * @throws IOException
+	 */
+	public boolean extract(String name, File target) throws IOException {
+		Item item = entries.get(name);
+		if (item == null)
+			return false;
+		if (item.entry.isDirectory()) {
+			IOUtils.createFolder(target);
+			return true;
+		}
+		IOUtils.ensureParentFolder(target);
+		IOUtils.copy(getInputStream(name), IOUtils.getOutputStream(target), true);
+		return true;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void readCentralDirectory(Charset charset) throws IOException {
+		long size = channel.size();
+		int tailLen = (int) Math.min(size, ENDHDR + MAX_COMMENT);
+		ByteBuffer tail = readFully(size - tailLen, tailLen);
+		int end = -1;
+		for (int i = tailLen - ENDHDR; i >= 0; i--) {
+			if (tail.getInt(i) == (int) ENDSIG) {
+				end = i;
+				break;
+			}
+		}
+		if (end < 0)
+			throw new IOException("zip END header not found.");
+		int total = tail.getShort(end + ENDTOT) & 0xFFFF;
+		long cenSize = tail.getInt(end + ENDSIZ) & 0xFFFFFFFFL;
+		long cenOffset = tail.getInt(end + ENDOFF) & 0xFFFFFFFFL;
+		if (total == 0xFFFF || cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL)
+			throw new IOException("ZIP64 is not supported.");
+		if (cenSize > Integer.MAX_VALUE || cenOffset + cenSize > size)
+			throw new IOException("invalid zip END header.");
+		ByteBuffer cen = readFully(cenOffset, (int) cenSize);
+		int pos = 0;
+		for (int i = 0; i < total; i++) {
+			if (cen.getInt(pos) != (int) CENSIG)
+				throw new IOException("invalid CEN header at entry " + i);
+			int flag = cen.getShort(pos + CENFLG) & 0xFFFF;
+			int nlen = cen.getShort(pos + CENNAM) & 0xFFFF;
+			int elen = cen.getShort(pos + CENEXT) & 0xFFFF;
+			int clen = cen.getShort(pos + CENCOM) & 0xFFFF;
+			byte[] nameBytes = new byte[nlen];
+			cen.position(pos + CENHDR);
+			cen.get(nameBytes);
+			String name = new String(nameBytes, (flag & 0x800) != 0 ? StringUtils.UTF8 : charset);
+			ZipEntry e = new ZipEntry(name);
+			e.setMethod(cen.getShort(pos + CENHOW) & 0xFFFF);
+			e.setTime(dosToJavaTime(cen.getInt(pos + CENTIM) & 0xFFFFFFFFL));
+			e.setCrc(cen.getInt(pos + CENCRC) & 0xFFFFFFFFL);
+			e.setCompressedSize(cen.getInt(pos + CENSIZ) & 0xFFFFFFFFL);
+			e.setSize(cen.getInt(pos + CENLEN) & 0xFFFFFFFFL);
+			entries.put(name, new Item(e, cen.getInt(pos + CENOFF) & 0xFFFFFFFFL));
+			pos += CENHDR + nlen + elen + clen;
+		}
+	}
+
+	private ByteBuffer readFully(long offset, int len) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, offset + buf.position()) <= 0)
+				throw new IOException("unexpected EOF at " + (offset + buf.position()));
+		}
+		buf.clear();
+		return buf;
+	}
+
+	@SuppressWarnings("deprecation")
+	private static long dosToJavaTime(long dtime) {
+		Date d = new Date((int) (((dtime >> 25) & 0x7f) + 80), (int) (((dtime >> 21) & 0x0f) - 1), (int) ((dtime >> 16) & 0x1f), (int) ((dtime >> 11) & 0x1f), (int) ((dtime >> 5) & 0x3f), (int) ((dtime << 1) & 0x3e));
+		return d.getTime();
+	}
+}
@@ -34,6 +34,8 @@ import java.util.zip.ZipException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.xuse.jmxspy.util.BufferPool;
+
 
 /**
  * This class implements an input stream filter for reading files in the ZIP
@@ -47,7 +49,7 @@ public class ZipInputStream extends InflaterInputStream implements ZipConstants
 	private int flag;
 	private CRC32 crc = new CRC32();
 	private long remaining;
-	private byte[] tmpbuf = new byte[512];
+	private byte[] tmpbuf = BufferPool.DEFAULT.borrow();
 	
 	private static final Logger log=LoggerFactory.getLogger(ZipInputStream.class);
 
@@ -267,6 +269,8 @@ public class ZipInputStream extends InflaterInputStream implements ZipConstants
 		if (!closed) {
 			super.close();
 			closed = true;
+			BufferPool.DEFAULT.release(tmpbuf);
+			tmpbuf = null;
 		}
 	}
 
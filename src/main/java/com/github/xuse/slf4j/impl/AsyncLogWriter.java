@@ -0,0 +1,256 @@
+package com.github.xuse.slf4j.impl;
+
+import java.io.PrintStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes rendered log lines on a dedicated background thread.
+ * <p>
+ * Lines are published into a bounded, lock-free multi-producer ring buffer
+ * (one sequence number per slot, producers claim slots by CAS). A single
+ * writer thread drains the buffer and writes the lines to the target
+ * {@link PrintStream} in batches, with one flush per batch instead of one per
+ * line.
+ * <p>
+ * What happens when the ring buffer is full is decided by the
+ * {@link FullPolicy}. {@link #shutdown()} writes out everything published so
+ * far; it is called from the shutdown hook registered by
+ * {@link SimpleLoggerConfiguration}.
+ * <p>
+ * While there is nothing to write the writer thread parks. A producer that
+ * publishes while the writer is parked wakes it up, so an idle logger does
+ * not cost a wake-up every millisecond.
+ *
+ * @author Joey
+ */
+class AsyncLogWriter implements Runnable {
+
+    /**
+     * Behavior when the ring buffer is full.
+     */
+    enum FullPolicy {
+        /** the logging thread waits until there is room */
+        BLOCK,
+        /** the line is discarded and counted */
+        DROP,
+        /**
+         * the line goes into an unbounded overflow queue, which is drained after
+         * the ring buffer. Ordering between the two is not preserved.
+         */
+        SPILL;
+
+        static FullPolicy parse(String s) {
+            if ("drop".equalsIgnoreCase(s))
+                return DROP;
+            if ("spill".equalsIgnoreCase(s))
+                return SPILL;
+            return BLOCK;
+        }
+    }
+
+    private static final int MAX_BATCH_CHARS = 64 * 1024;
+    /** producers waiting for room in the ring buffer (BLOCK policy) */
+    private static final long FULL_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /** upper bound for an idle writer, in case a wake-up is missed */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final OutputChoice output;
+    private final FullPolicy policy;
+    private final String[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    /** only accessed by the writer thread, and by shutdown() after it exited */
+    private long head;
+
+    private final Queue<String> spill = new ConcurrentLinkedQueue<String>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private long reportedDrops;
+
+    private final Thread thread;
+    private volatile boolean running = true;
+    /** set by the writer thread before it parks on an empty buffer */
+    private volatile boolean sleeping;
+
+    AsyncLogWriter(OutputChoice output, int capacity, FullPolicy policy) {
+        int size = 2;
+        while (size < capacity)
+            size <<= 1;
+        this.output = output;
+        this.policy = policy;
+        this.buffer = new String[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+        this.mask = size - 1;
+        this.thread = new Thread(this, "simple-logger-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Publish a line. Called by any logging thread.
+     */
+    void append(String line) {
+        if (!running) {
+            writeDirectly(line);
+            return;
+        }
+        if (!offer(line)) {
+            switch (policy) {
+            case DROP:
+                dropped.incrementAndGet();
+                return;
+            case SPILL:
+                spilled.incrementAndGet();
+                spill.add(line);
+                break;
+            default:
+                int spins = 0;
+                while (!offer(line)) {
+                    if (!running) {
+                        writeDirectly(line);
+                        return;
+                    }
+                    if (++spins < 100)
+                        Thread.yield();
+                    else
+                        LockSupport.parkNanos(FULL_PARK_NANOS);
+                }
+            }
+        }
+        if (sleeping) {
+            sleeping = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * @return number of lines discarded because the buffer was full
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of lines that went to the overflow queue
+     */
+    long getSpilledCount() {
+        return spilled.get();
+    }
+
+    /**
+     * Stop the writer thread after everything published so far is written.
+     * A producer that saw the writer still running may publish after the
+     * writer's last drain; once the writer has exited, whatever is left in the
+     * ring buffer and the overflow queue is written on the calling thread.
+     */
+    void shutdown() {
+        if (!running)
+            return;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!thread.isAlive()) {
+            drain(new StringBuilder());
+        }
+    }
+
+    private boolean offer(String line) {
+        long pos = tail.get();
+        while (true) {
+            int slot = (int) pos & mask;
+            long dif = sequences.get(slot) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer[slot] = line;
+                    // a volatile store, so that the following read of
+                    // 'sleeping' cannot be reordered before the publication
+                    sequences.set(slot, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    private String poll() {
+        int slot = (int) head & mask;
+        if (sequences.get(slot) != head + 1)
+            return spill.poll();
+        String line = buffer[slot];
+        buffer[slot] = null;
+        sequences.lazySet(slot, head + buffer.length);
+        head++;
+        return line;
+    }
+
+    private boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1 && spill.isEmpty();
+    }
+
+    public void run() {
+        StringBuilder batch = new StringBuilder(MAX_BATCH_CHARS);
+        while (true) {
+            boolean stopping = !running;
+            drain(batch);
+            if (stopping)
+                return;
+            sleeping = true;
+            if (isEmpty() && running)
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            sleeping = false;
+        }
+    }
+
+    /*
+     * Only called by the writer thread, or by shutdown() after it has exited.
+     */
+    private void drain(StringBuilder batch) {
+        String line;
+        while ((line = poll()) != null) {
+            batch.append(line).append(System.lineSeparator());
+            if (batch.length() >= MAX_BATCH_CHARS)
+                flush(batch);
+        }
+        reportDrops(batch);
+        if (batch.length() > 0)
+            flush(batch);
+    }
+
+    private void reportDrops(StringBuilder batch) {
+        long drops = dropped.get();
+        if (drops != reportedDrops) {
+            batch.append("SimpleLogger: ").append(drops - reportedDrops)
+                    .append(" log events dropped, ring buffer full").append(System.lineSeparator());
+            reportedDrops = drops;
+        }
+    }
+
+    private void flush(StringBuilder batch) {
+        PrintStream out = output.getTargetPrintStream();
+        out.print(batch);
+        out.flush();
+        batch.setLength(0);
+    }
+
+    private void writeDirectly(String line) {
+        PrintStream out = output.getTargetPrintStream();
+        out.println(line);
+        out.flush();
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.xuse.slf4j.impl;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread-safe, lock-free date formatting for log lines.
+ * <p>
+ * The text of the current second is rendered once and kept in an immutable
+ * snapshot that is swapped by CAS. If the pattern contains a single
+ * <code>SSS</code> field, the snapshot is split around the milliseconds and
+ * each call only appends the three millisecond digits. For any other use of
+ * <code>S</code> the snapshot is cached per millisecond instead. The
+ * {@link DateFormat} is cloned for every new snapshot, so it is never shared
+ * between threads.
+ *
+ * @author Joey
+ */
+class CachedDateFormatter {
+
+    private static final class Snapshot {
+        /** epoch second, or epoch millisecond when {@link #perMillis} */
+        final long key;
+        final boolean perMillis;
+        final String prefix;
+        /** null when the text has no millisecond digits */
+        final String suffix;
+
+        Snapshot(long key, boolean perMillis, String prefix, String suffix) {
+            this.key = key;
+            this.perMillis = perMillis;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+    }
+
+    private final DateFormat prototype;
+    private final AtomicReference<Snapshot> cache = new AtomicReference<Snapshot>(new Snapshot(Long.MIN_VALUE, false, "", null));
+
+    CachedDateFormatter(DateFormat prototype) {
+        this.prototype = (DateFormat) prototype.clone();
+    }
+
+    CachedDateFormatter(String pattern) {
+        this(new SimpleDateFormat(pattern));
+    }
+
+    /**
+     * Append the formatted time to the builder.
+     */
+    void format(long millis, StringBuilder sb) {
+        long second = Math.floorDiv(millis, 1000L);
+        Snapshot s = cache.get();
+        if (s.perMillis ? s.key != millis : s.key != second) {
+            s = render(millis, second);
+        }
+        sb.append(s.prefix);
+        if (s.suffix != null) {
+            int ms = (int) (millis - second * 1000L);
+            sb.append((char) ('0' + ms / 100)).append((char) ('0' + ms / 10 % 10)).append((char) ('0' + ms % 10));
+            sb.append(s.suffix);
+        }
+    }
+
+    String format(long millis) {
+        StringBuilder sb = new StringBuilder(32);
+        format(millis, sb);
+        return sb.toString();
+    }
+
+    private Snapshot render(long millis, long second) {
+        DateFormat df = (DateFormat) prototype.clone();
+        long start = second * 1000L;
+        String first = df.format(new Date(start));
+        String last = df.format(new Date(start + 999));
+        Snapshot s;
+        if (first.equals(last)) {
+            s = new Snapshot(second, false, first, null);
+        } else {
+            int i = 0;
+            int j = 0;
+            int len = first.length();
+            if (len == last.length()) {
+                while (first.charAt(i) == last.charAt(i))
+                    i++;
+                j = len - 1;
+                while (first.charAt(j) == last.charAt(j))
+                    j--;
+            }
+            if (len == last.length() && j - i == 2 && first.startsWith("000", i) && last.startsWith("999", i)) {
+                s = new Snapshot(second, false, first.substring(0, i), first.substring(j + 1));
+            } else {
+                s = new Snapshot(millis, true, df.format(new Date(millis)), null);
+            }
+        }
+        Snapshot old = cache.get();
+        cache.compareAndSet(old, s);
+        return s;
+    }
+
+    /**
+     * Compare with a SimpleDateFormat shared under a lock, as SimpleLogger used
+     * to do.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final int THREADS = 8;
+        final int LOOPS = 2000000;
+        final String pattern = "yyyy-MM-dd HH:mm:ss.SSS";
+        final CachedDateFormatter cached = new CachedDateFormatter(pattern);
+        final DateFormat shared = new SimpleDateFormat(pattern);
+        for (int round = 0; round < 3; round++) {
+            long t1 = runThreads(THREADS, new Runnable() {
+                public void run() {
+                    StringBuilder sb = new StringBuilder();
+                    for (int i = 0; i < LOOPS; i++) {
+                        sb.setLength(0);
+                        cached.format(System.currentTimeMillis(), sb);
+                    }
+                }
+            });
+            long t2 = runThreads(THREADS, new Runnable() {
+                public void run() {
+                    for (int i = 0; i < LOOPS; i++) {
+                        Date now = new Date();
+                        synchronized (shared) {
+                            shared.format(now);
+                        }
+                    }
+                }
+            });
+            System.out.println("cached:" + t1 + "ms synchronized:" + t2 + "ms");
+        }
+    }
+
+    private static long runThreads(int n, Runnable task) throws InterruptedException {
+        Thread[] threads = new Thread[n];
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            threads[i] = new Thread(task);
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return System.currentTimeMillis() - start;
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.xuse.slf4j.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Set;
+
+import org.slf4j.MDC;
+import org.slf4j.helpers.BasicMDCAdapter;
+import org.slf4j.spi.MDCAdapter;
+
+/**
+ * Renders log events as JSON lines, one object per line:
+ *
+ * <pre>
+ * {"ts":"2019-01-01 12:00:00.000","level":"INFO","thread":"main","logger":"a.b.C","msg":"...","mdc":{"k":"v"},"exception":"..."}
+ * </pre>
+ *
+ * <code>ts</code> is the formatted time when a dateTimeFormat is configured,
+ * otherwise the epoch milliseconds as a number. <code>mdc</code> and
+ * <code>exception</code> are only present when there is something to write.
+ * <p>
+ * Everything is appended to the caller's builder. The message is rendered
+ * unescaped first and then escaped in place, so the text-mode formatting code
+ * (including the garbage-free {@link ParameterFormatter}) is reused as is.
+ *
+ * @author Joey
+ */
+final class JsonLayout {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private JsonLayout() {
+    }
+
+    /**
+     * Append everything up to the opening quote of the message.
+     *
+     * @param loggerField the result of {@link #loggerField(String)}
+     * @return the start of the message in the builder
+     */
+    static int appendStart(StringBuilder sb, long millis, String level, String loggerField) {
+        sb.append("{\"ts\":");
+        CachedDateFormatter df = SimpleLogger.CONFIG_PARAMS.dateFormatter;
+        if (df != null) {
+            sb.append('"');
+            df.format(millis, sb);
+            sb.append('"');
+        } else {
+            sb.append(millis);
+        }
+        sb.append(",\"level\":\"").append(level);
+        sb.append("\",\"thread\":");
+        sb.append(LineBuffer.threadNameJson());
+        sb.append(loggerField);
+        return sb.length();
+    }
+
+    /**
+     * The logger name and the start of the message, computed once per logger.
+     */
+    static String loggerField(String logger) {
+        StringBuilder sb = new StringBuilder(logger.length() + 24);
+        sb.append(",\"logger\":");
+        appendString(sb, logger);
+        sb.append(",\"msg\":\"");
+        return sb.toString();
+    }
+
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        appendString(sb, s);
+        return sb.toString();
+    }
+
+    /**
+     * Escape the message rendered since <code>start</code>, then append the MDC
+     * and the exception and close the object.
+     */
+    static void appendEnd(StringBuilder sb, int start, Throwable t) {
+        escape(sb, start);
+        sb.append('"');
+        appendMdc(sb);
+        if (t != null) {
+            sb.append(",\"exception\":\"");
+            int from = sb.length();
+            StringWriter sw = new StringWriter();
+            t.printStackTrace(new PrintWriter(sw));
+            StringBuffer trace = sw.getBuffer();
+            int len = trace.length();
+            while (len > 0 && (trace.charAt(len - 1) == '\n' || trace.charAt(len - 1) == '\r'))
+                len--;
+            sb.append(trace, 0, len);
+            escape(sb, from);
+            sb.append('"');
+        }
+        sb.append('}');
+    }
+
+    private static void appendMdc(StringBuilder sb) {
+        MDCAdapter adapter = MDC.getMDCAdapter();
+        if (!(adapter instanceof BasicMDCAdapter))
+            return;
+        Set<String> keys = ((BasicMDCAdapter) adapter).getKeys();
+        if (keys == null || keys.isEmpty())
+            return;
+        sb.append(",\"mdc\":{");
+        boolean first = true;
+        for (String key : keys) {
+            if (!first)
+                sb.append(',');
+            first = false;
+            appendString(sb, key);
+            sb.append(':');
+            appendString(sb, adapter.get(key));
+        }
+        sb.append('}');
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        if (s == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        int from = sb.length();
+        sb.append(s);
+        escape(sb, from);
+        sb.append('"');
+    }
+
+    /**
+     * Escape the characters from <code>from</code> to the end of the builder.
+     * They are scanned in the thread's char buffer; only if something needs
+     * escaping the tail of the builder is rewritten.
+     */
+    static void escape(StringBuilder sb, int from) {
+        int n = sb.length() - from;
+        char[] src = LineBuffer.copyChars(sb, from);
+        int i = 0;
+        while (i < n) {
+            char c = src[i];
+            if (c < 0x20 || c == '"' || c == '\\')
+                break;
+            i++;
+        }
+        if (i == n)
+            return;
+        sb.setLength(from + i);
+        int run = i;
+        for (; i < n; i++) {
+            char c = src[i];
+            if (c >= 0x20 && c != '"' && c != '\\')
+                continue;
+            // copy the preceding unescaped run in bulk
+            sb.append(src, run, i - run);
+            run = i + 1;
+            sb.append('\\');
+            switch (c) {
+            case '"':
+            case '\\':
+                sb.append(c);
+                break;
+            case '\n':
+                sb.append('n');
+                break;
+            case '\r':
+                sb.append('r');
+                break;
+            case '\t':
+                sb.append('t');
+                break;
+            case '\b':
+                sb.append('b');
+                break;
+            case '\f':
+                sb.append('f');
+                break;
+            default:
+                sb.append("u00").append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+            }
+        }
+        sb.append(src, run, n - run);
+    }
+
+    /**
+     * Compare the throughput of the text and JSON formats for events that
+     * carry the same content: the text events contain the MDC value in the
+     * message, the JSON events get it from the MDC. The text format shows time,
+     * thread, level and logger name, like the JSON fields. Both formats share
+     * one configuration and one output file; only the format flag is switched.
+     * Besides events/s the output bytes per event and MB/s are reported, so a
+     * difference in events/s can be compared with the difference in size.
+     */
+    public static void main(String[] args) throws IOException {
+        final int LOOPS = 500000;
+        File file = File.createTempFile("simple-logger", ".log");
+        file.deleteOnExit();
+        System.setProperty(SimpleLogger.LOG_FILE_KEY, file.getPath());
+        System.setProperty(SimpleLogger.SHOW_DATE_TIME_KEY, "true");
+        System.setProperty(SimpleLogger.DATE_TIME_FORMAT_KEY, "yyyy-MM-dd HH:mm:ss.SSS");
+        System.setProperty(SimpleLogger.SHOW_THREAD_NAME_KEY, "true");
+        System.setProperty(SimpleLogger.SHOW_LOG_NAME_KEY, "true");
+        System.setProperty(SimpleLogger.LEVEL_IN_BRACKETS_KEY, "true");
+        System.setProperty(SimpleLogger.INFO_LEVEL_STRING_KEY, "INFO");
+        System.setProperty(SimpleLogger.GARBAGE_FREE_KEY, "true");
+        SimpleLogger.init();
+        SimpleLoggerConfiguration config = SimpleLogger.CONFIG_PARAMS;
+        SimpleLogger logger = new SimpleLogger("com.github.xuse.bench.JsonLayout");
+        MDC.put("requestId", "a7f3c2");
+        try {
+            for (int round = 0; round < 3; round++) {
+                StringBuilder result = new StringBuilder();
+                for (String format : new String[] { "text", "json" }) {
+                    boolean json = "json".equals(format);
+                    config.jsonFormat = json;
+                    String pattern = json ? "user {} logged in from \"{}\"" : "user {} logged in from \"{}\" requestId=a7f3c2";
+                    long size = file.length();
+                    long start = System.currentTimeMillis();
+                    for (int i = 0; i < LOOPS; i++) {
+                        logger.info(pattern, i, "10.0.0.1");
+                    }
+                    long cost = Math.max(System.currentTimeMillis() - start, 1);
+                    long bytes = file.length() - size;
+                    result.append(format).append(": ").append(LOOPS * 1000L / cost).append(" events/s, ")
+                            .append(bytes / LOOPS).append(" bytes/event, ").append(bytes * 1000L / cost / (1024 * 1024)).append(" MB/s  ");
+                }
+                System.out.println(result);
+            }
+        } finally {
+            config.outputChoice.getTargetPrintStream().close();
+        }
+    }
+}
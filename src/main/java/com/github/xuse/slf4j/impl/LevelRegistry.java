@@ -0,0 +1,144 @@
+package com.github.xuse.slf4j.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Holds the configured logger levels and applies them to the live loggers.
+ * <p>
+ * A level set for a name applies to that logger and to every logger below it
+ * in the dotted hierarchy, unless a more specific name has its own level. The
+ * level of each logger is resolved once and stored in its volatile
+ * {@link SimpleLogger#currentLogLevel}, so the level check when logging stays
+ * a single field read. Levels from the configuration can be replaced by
+ * {@link #reload(int, Map)}; levels set at runtime by
+ * {@link #setLevel(String, int)} take precedence over them. Every change
+ * re-resolves the affected loggers under the registry lock, so loggers
+ * created concurrently never miss a change.
+ *
+ * @author Joey
+ */
+class LevelRegistry {
+
+    /** the name used for the default level */
+    static final String ROOT = "ROOT";
+
+    private final List<SimpleLogger> loggers = new ArrayList<SimpleLogger>();
+    private Map<String, Integer> configured;
+    private final Map<String, Integer> overrides = new HashMap<String, Integer>();
+    private int defaultLevel;
+    private Integer rootOverride;
+
+    LevelRegistry(int defaultLevel, Map<String, Integer> configured) {
+        this.defaultLevel = defaultLevel;
+        this.configured = configured;
+    }
+
+    synchronized void register(SimpleLogger logger) {
+        logger.currentLogLevel = resolve(logger.getName());
+        loggers.add(logger);
+    }
+
+    /**
+     * Set the level of a logger and its descendants at runtime.
+     *
+     * @param name logger name, or {@link #ROOT} for the default level
+     * @return number of existing loggers affected
+     */
+    synchronized int setLevel(String name, int level) {
+        if (isRoot(name)) {
+            rootOverride = level;
+            return refresh(null);
+        }
+        overrides.put(name, level);
+        return refresh(name);
+    }
+
+    /**
+     * Remove a level set by {@link #setLevel(String, int)}, so the logger
+     * falls back to the configuration again.
+     *
+     * @return number of existing loggers affected
+     */
+    synchronized int resetLevel(String name) {
+        if (isRoot(name)) {
+            rootOverride = null;
+            return refresh(null);
+        }
+        if (overrides.remove(name) == null)
+            return 0;
+        return refresh(name);
+    }
+
+    /**
+     * Replace the levels read from the configuration.
+     */
+    synchronized void reload(int defaultLevel, Map<String, Integer> configured) {
+        this.defaultLevel = defaultLevel;
+        this.configured = configured;
+        refresh(null);
+    }
+
+    /**
+     * @return the explicitly set levels by logger name, runtime levels
+     *         included
+     */
+    synchronized Map<String, Integer> getLevels() {
+        Map<String, Integer> result = new TreeMap<String, Integer>(configured);
+        result.putAll(overrides);
+        result.put(ROOT, rootOverride == null ? defaultLevel : rootOverride);
+        return result;
+    }
+
+    synchronized int getEffectiveLevel(String name) {
+        return isRoot(name) ? rootLevel() : resolve(name);
+    }
+
+    /**
+     * Re-resolve the loggers at or below the given name, or all loggers when
+     * the name is null.
+     */
+    private int refresh(String name) {
+        int count = 0;
+        for (SimpleLogger logger : loggers) {
+            if (name == null || isSelfOrDescendant(logger.getName(), name)) {
+                int level = resolve(logger.getName());
+                if (logger.currentLogLevel != level) {
+                    logger.currentLogLevel = level;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int resolve(String name) {
+        String tempName = name;
+        int indexOfLastDot = tempName.length();
+        while (indexOfLastDot > -1) {
+            tempName = tempName.substring(0, indexOfLastDot);
+            Integer level = overrides.get(tempName);
+            if (level == null)
+                level = configured.get(tempName);
+            if (level != null)
+                return level;
+            indexOfLastDot = tempName.lastIndexOf('.');
+        }
+        return rootLevel();
+    }
+
+    private int rootLevel() {
+        return rootOverride == null ? defaultLevel : rootOverride;
+    }
+
+    private static boolean isRoot(String name) {
+        return name == null || name.length() == 0 || ROOT.equalsIgnoreCase(name);
+    }
+
+    private static boolean isSelfOrDescendant(String loggerName, String name) {
+        return loggerName.startsWith(name) && (loggerName.length() == name.length() || loggerName.charAt(name.length()) == '.');
+    }
+}
@@ -0,0 +1,196 @@
+package com.github.xuse.slf4j.impl;
+
+import java.io.PrintStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Per-thread reusable buffers for the garbage-free logging path: a
+ * {@link StringBuilder} that a log line is rendered into, a char array used to
+ * scan it, and a byte array the line is encoded into before it is written to
+ * the output stream.
+ * <p>
+ * Lines are encoded with the platform charset, the same one the
+ * {@link PrintStream}s of the normal path (and the stack traces written through
+ * them) use, so the garbage-free flag does not change the encoding of the log.
+ * UTF-8 is encoded inline; other charsets use a per-thread
+ * {@link CharsetEncoder}.
+ * <p>
+ * If logging happens again on the same thread while a line is being rendered
+ * (for example from an argument's <code>toString()</code>), the nested call
+ * gets a fresh builder, so the outer line is not overwritten.
+ *
+ * @author Joey
+ */
+final class LineBuffer {
+
+    /** buffers that grew beyond this size are not kept */
+    private static final int MAX_RETAINED = 64 * 1024;
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final boolean UTF8 = "UTF-8".equals(CHARSET.name());
+
+    private static final ThreadLocal<LineBuffer> LOCAL = new ThreadLocal<LineBuffer>() {
+        protected LineBuffer initialValue() {
+            return new LineBuffer();
+        }
+    };
+
+    private StringBuilder text = new StringBuilder(256);
+    private byte[] bytes = new byte[1024];
+    private char[] chars = new char[1024];
+    /** for charsets other than UTF-8, with buffers wrapping the arrays above */
+    private CharsetEncoder encoder;
+    private CharBuffer charBuffer;
+    private ByteBuffer byteBuffer;
+    private boolean busy;
+    /** the thread name last seen, and its JSON string */
+    private String threadName;
+    private String threadNameJson;
+
+    private LineBuffer() {
+    }
+
+    /**
+     * Get an empty builder for the current thread. Must be paired with
+     * {@link #release(StringBuilder)}.
+     */
+    static StringBuilder acquire() {
+        LineBuffer b = LOCAL.get();
+        if (b.busy)
+            return new StringBuilder(256);
+        b.busy = true;
+        if (b.text.capacity() > MAX_RETAINED)
+            b.text = new StringBuilder(256);
+        b.text.setLength(0);
+        return b.text;
+    }
+
+    static void release(StringBuilder sb) {
+        LineBuffer b = LOCAL.get();
+        if (b.text == sb)
+            b.busy = false;
+    }
+
+    /**
+     * @return the name of the current thread as an escaped and quoted JSON
+     *         string, recomputed only when the thread is renamed
+     */
+    static String threadNameJson() {
+        LineBuffer b = LOCAL.get();
+        String name = Thread.currentThread().getName();
+        if (name != b.threadName) {
+            b.threadNameJson = JsonLayout.quote(name);
+            b.threadName = name;
+        }
+        return b.threadNameJson;
+    }
+
+    /**
+     * Copy the characters of the builder from <code>from</code> to its end into
+     * the thread's char buffer, so they can be scanned without a bounds check
+     * per character.
+     *
+     * @return the thread's char buffer, holding the characters from index 0
+     */
+    static char[] copyChars(StringBuilder s, int from) {
+        LineBuffer b = LOCAL.get();
+        int n = s.length() - from;
+        if (b.chars.length < n) {
+            b.chars = new char[Math.max(n, b.chars.length * 2)];
+        }
+        s.getChars(from, from + n, b.chars, 0);
+        return b.chars;
+    }
+
+    /**
+     * Encode the characters with the platform charset into the thread's byte
+     * buffer and write them to the stream with a single call.
+     */
+    static void write(StringBuilder s, PrintStream out) {
+        LineBuffer b = LOCAL.get();
+        int len = UTF8 ? b.encodeUtf8(s) : b.encode(s);
+        out.write(b.bytes, 0, len);
+        if (b.bytes.length > MAX_RETAINED)
+            b.bytes = new byte[1024];
+        if (b.chars.length > MAX_RETAINED)
+            b.chars = new char[1024];
+    }
+
+    /*
+     * Unmappable characters become the charset's replacement, as PrintStream
+     * does.
+     */
+    private int encode(StringBuilder s) {
+        if (encoder == null) {
+            encoder = CHARSET.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        int n = s.length();
+        char[] src = copyChars(s, 0);
+        if (charBuffer == null || charBuffer.array() != src) {
+            charBuffer = CharBuffer.wrap(src);
+        }
+        int max = (int) Math.ceil(n * (double) encoder.maxBytesPerChar());
+        if (bytes.length < max) {
+            bytes = new byte[max];
+        }
+        if (byteBuffer == null || byteBuffer.array() != bytes) {
+            byteBuffer = ByteBuffer.wrap(bytes);
+        }
+        CharBuffer in = charBuffer;
+        ByteBuffer out = byteBuffer;
+        // through Buffer, so that the Java 8 signatures are called
+        ((Buffer) in).clear();
+        ((Buffer) in).limit(n);
+        ((Buffer) out).clear();
+        encoder.reset();
+        CoderResult r = encoder.encode(in, out, true);
+        if (!r.isOverflow())
+            r = encoder.flush(out);
+        if (r.isOverflow()) {
+            // maxBytesPerChar should prevent this, encode again with room to spare
+            bytes = new byte[bytes.length * 2];
+            byteBuffer = null;
+            return encode(s);
+        }
+        return out.position();
+    }
+
+    private int encodeUtf8(StringBuilder s) {
+        int n = s.length();
+        byte[] dst = bytes;
+        if (dst.length < n * 3) {
+            dst = bytes = new byte[n * 3];
+        }
+        char[] src = copyChars(s, 0);
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            char c = src[i];
+            if (c < 0x80) {
+                dst[p++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[p++] = (byte) (0xC0 | (c >> 6));
+                dst[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(src[i + 1])) {
+                int cp = Character.toCodePoint(c, src[++i]);
+                dst[p++] = (byte) (0xF0 | (cp >> 18));
+                dst[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dst[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dst[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                dst[p++] = '?';
+            } else {
+                dst[p++] = (byte) (0xE0 | (c >> 12));
+                dst[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return p;
+    }
+}
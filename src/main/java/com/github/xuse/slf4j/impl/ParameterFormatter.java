@@ -0,0 +1,103 @@
+package com.github.xuse.slf4j.impl;
+
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Substitutes <code>{}</code> placeholders directly into a caller-supplied
+ * {@link StringBuilder}, without creating a
+ * {@link org.slf4j.helpers.FormattingTuple} or an intermediate message
+ * string.
+ * <p>
+ * The rules are the same as {@link MessageFormatter}: <code>\{}</code> is a
+ * literal <code>{}</code>, <code>\\{}</code> is a backslash followed by an
+ * argument, and a {@link Throwable} in the last position is never substituted
+ * but returned to the caller. Strings, numbers, booleans and characters are
+ * appended without allocation. Arrays are rendered through
+ * {@link MessageFormatter}.
+ *
+ * @author Joey
+ */
+final class ParameterFormatter {
+
+    private ParameterFormatter() {
+    }
+
+    /**
+     * @return the throwable to log, or null
+     */
+    static Throwable format(StringBuilder sb, String pattern, Object arg1, Object arg2) {
+        Throwable t = arg2 instanceof Throwable ? (Throwable) arg2 : null;
+        format(sb, pattern, null, arg1, arg2, t == null ? 2 : 1);
+        return t;
+    }
+
+    /**
+     * @return the throwable to log, or null
+     */
+    static Throwable format(StringBuilder sb, String pattern, Object[] args) {
+        int count = args == null ? 0 : args.length;
+        Throwable t = count > 0 && args[count - 1] instanceof Throwable ? (Throwable) args[count - 1] : null;
+        format(sb, pattern, args, null, null, t == null ? count : count - 1);
+        return t;
+    }
+
+    private static void format(StringBuilder sb, String pattern, Object[] args, Object arg1, Object arg2, int count) {
+        if (pattern == null) {
+            sb.append((String) null);
+            return;
+        }
+        int from = 0;
+        int n = pattern.length();
+        for (int argIndex = 0; argIndex < count; argIndex++) {
+            int j = pattern.indexOf("{}", from);
+            if (j < 0)
+                break;
+            if (j > 0 && pattern.charAt(j - 1) == '\\') {
+                if (j > 1 && pattern.charAt(j - 2) == '\\') {
+                    // \\{} : escaped backslash, then the argument
+                    sb.append(pattern, from, j - 1);
+                    appendArg(sb, args == null ? (argIndex == 0 ? arg1 : arg2) : args[argIndex]);
+                    from = j + 2;
+                } else {
+                    // \{} : literal {}
+                    argIndex--;
+                    sb.append(pattern, from, j - 1).append('{');
+                    from = j + 1;
+                }
+            } else {
+                sb.append(pattern, from, j);
+                appendArg(sb, args == null ? (argIndex == 0 ? arg1 : arg2) : args[argIndex]);
+                from = j + 2;
+            }
+        }
+        sb.append(pattern, from, n);
+    }
+
+    private static void appendArg(StringBuilder sb, Object o) {
+        if (o == null) {
+            sb.append("null");
+        } else if (o instanceof String) {
+            sb.append((String) o);
+        } else if (o instanceof Integer || o instanceof Long || o instanceof Short || o instanceof Byte) {
+            sb.append(((Number) o).longValue());
+        } else if (o instanceof Double) {
+            sb.append(((Double) o).doubleValue());
+        } else if (o instanceof Float) {
+            sb.append(((Float) o).floatValue());
+        } else if (o instanceof Boolean) {
+            sb.append(((Boolean) o).booleanValue());
+        } else if (o instanceof Character) {
+            sb.append(((Character) o).charValue());
+        } else if (o.getClass().isArray()) {
+            sb.append(MessageFormatter.arrayFormat("{}", new Object[] { o }).getMessage());
+        } else {
+            try {
+                sb.append(o.toString());
+            } catch (Throwable t) {
+                System.err.println("SLF4J: Failed toString() invocation on an object of type [" + o.getClass().getName() + "]");
+                t.printStackTrace();
+                sb.append("[FAILED toString()]");
+            }
+        }
+    }
+}
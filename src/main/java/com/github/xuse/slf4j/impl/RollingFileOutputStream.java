@@ -0,0 +1,324 @@
+package com.github.xuse.slf4j.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.helpers.Util;
+
+/**
+ * Buffered log file output that rolls over by size and/or time.
+ * <p>
+ * Writes go into a large in-memory buffer. {@link #flush()} only writes the
+ * buffer to the file if the last real flush was more than
+ * {@link #FLUSH_INTERVAL_MILLIS} ago. A background thread flushes the rest
+ * periodically. After {@link #shutdown()} the stream writes through without
+ * buffering.
+ * <p>
+ * On rollover the current file is renamed to
+ * <code>name.yyyyMMdd-HHmmss</code> (the time the file was started) and a new
+ * file is opened. Gzip compression of the renamed file (with
+ * {@link GZIPOutputStream}, so the logging backend does not depend on the
+ * archive utilities and their global settings) and deletion of rolled files
+ * beyond the retention count run on the background thread, so logging threads
+ * never wait for them. Only files named like the ones this class rolls
+ * (<code>name.yyyyMMdd-HHmmss[-n][.gz]</code>) are counted and deleted.
+ *
+ * @author Joey
+ */
+class RollingFileOutputStream extends OutputStream {
+
+    enum RollingPeriod {
+        NONE, HOURLY, DAILY;
+
+        static RollingPeriod parse(String s) {
+            if ("hourly".equalsIgnoreCase(s))
+                return HOURLY;
+            if ("daily".equalsIgnoreCase(s))
+                return DAILY;
+            return NONE;
+        }
+    }
+
+    static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final File file;
+    private final long maxFileSize;
+    private final RollingPeriod period;
+    private final int maxBackups;
+    private final boolean compress;
+    private final byte[] buf;
+    private final ScheduledExecutorService background;
+
+    private int count;
+    private FileOutputStream out;
+    private long written;
+    private long startTime;
+    private long nextRollTime;
+    private long lastFlush;
+    private boolean closed;
+    private boolean writeThrough;
+
+    /**
+     * @param file        the log file
+     * @param maxFileSize roll over when the file would exceed this size, 0
+     *                    for no limit
+     * @param period      time-based rollover
+     * @param maxBackups  number of rolled files to keep, 0 to keep all
+     * @param compress    gzip rolled files
+     * @param bufferSize  size of the write buffer
+     */
+    RollingFileOutputStream(File file, long maxFileSize, RollingPeriod period, int maxBackups, boolean compress, int bufferSize) throws IOException {
+        this.file = file.getAbsoluteFile();
+        this.maxFileSize = maxFileSize;
+        this.period = period;
+        this.maxBackups = maxBackups;
+        this.compress = compress;
+        this.buf = new byte[bufferSize];
+        this.background = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "simple-logger-roller");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        open();
+        background.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    flushNow();
+                } catch (IOException e) {
+                    Util.report("Could not flush [" + RollingFileOutputStream.this.file + "]", e);
+                }
+            }
+        }, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        if (writeThrough || count == buf.length) {
+            write(new byte[] { (byte) b }, 0, 1);
+            return;
+        }
+        if (closed)
+            throw new IOException("Stream closed");
+        if (shouldRoll(1))
+            roll();
+        buf[count++] = (byte) b;
+        written++;
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        if (shouldRoll(len))
+            roll();
+        if (writeThrough || len >= buf.length) {
+            flushBuffer();
+            out.write(b, off, len);
+        } else {
+            if (len > buf.length - count)
+                flushBuffer();
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+        written += len;
+    }
+
+    /**
+     * Writes the buffer to the file only if the last flush is older than
+     * {@link #FLUSH_INTERVAL_MILLIS}; the background thread takes care of the
+     * rest.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+            flushBuffer();
+            lastFlush = now;
+        }
+    }
+
+    synchronized void flushNow() throws IOException {
+        if (closed)
+            return;
+        flushBuffer();
+        lastFlush = System.currentTimeMillis();
+    }
+
+    /**
+     * Flush everything and switch to unbuffered writes, so lines logged later
+     * during JVM shutdown are not lost. Background work is stopped.
+     */
+    synchronized void shutdown() throws IOException {
+        writeThrough = true;
+        flushNow();
+        background.shutdown();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            flushBuffer();
+            out.close();
+        } finally {
+            background.shutdown();
+        }
+    }
+
+    private boolean shouldRoll(int len) {
+        if (maxFileSize > 0 && written > 0 && written + len > maxFileSize)
+            return true;
+        return period != RollingPeriod.NONE && System.currentTimeMillis() >= nextRollTime;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private void open() throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists())
+            dir.mkdirs();
+        out = new FileOutputStream(file, true);
+        written = file.length();
+        startTime = System.currentTimeMillis();
+        if (written > 0 && file.lastModified() < startTime)
+            startTime = file.lastModified();
+        nextRollTime = computeNextRollTime(System.currentTimeMillis());
+        lastFlush = System.currentTimeMillis();
+    }
+
+    private void roll() throws IOException {
+        flushBuffer();
+        out.close();
+        final File rolled = rolledFile();
+        if (!file.renameTo(rolled)) {
+            Util.report("Could not rename [" + file + "] to [" + rolled + "], continuing in the same file");
+            out = new FileOutputStream(file, true);
+            written = 0;
+            nextRollTime = computeNextRollTime(System.currentTimeMillis());
+            return;
+        }
+        open();
+        if (background.isShutdown())
+            return;
+        background.execute(new Runnable() {
+            public void run() {
+                if (compress)
+                    compress(rolled);
+                deleteOldBackups();
+            }
+        });
+    }
+
+    private File rolledFile() {
+        String base = file.getName() + "." + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(startTime));
+        File rolled = new File(file.getParentFile(), base);
+        for (int i = 1; rolled.exists() || new File(rolled.getPath() + ".gz").exists(); i++) {
+            rolled = new File(file.getParentFile(), base + "-" + i);
+        }
+        return rolled;
+    }
+
+    private long computeNextRollTime(long now) {
+        if (period == RollingPeriod.NONE)
+            return Long.MAX_VALUE;
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(now);
+        c.set(Calendar.MILLISECOND, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MINUTE, 0);
+        if (period == RollingPeriod.DAILY) {
+            c.set(Calendar.HOUR_OF_DAY, 0);
+            c.add(Calendar.DAY_OF_MONTH, 1);
+        } else {
+            c.add(Calendar.HOUR_OF_DAY, 1);
+        }
+        return c.getTimeInMillis();
+    }
+
+    private static void compress(File rolled) {
+        File gz = new File(rolled.getPath() + ".gz");
+        try {
+            gzip(rolled, gz);
+            if (!rolled.delete())
+                Util.report("Could not delete [" + rolled + "] after compression");
+        } catch (IOException e) {
+            Util.report("Could not compress [" + rolled + "]", e);
+            gz.delete();
+        }
+    }
+
+    private static void gzip(File src, File gz) throws IOException {
+        InputStream in = new FileInputStream(src);
+        try {
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(gz), 64 * 1024);
+            try {
+                byte[] b = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(b)) != -1)
+                    out.write(b, 0, n);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void deleteOldBackups() {
+        if (maxBackups <= 0)
+            return;
+        // group 1: start time; the suffix is a sequence number within the same second
+        final Pattern rolledName = Pattern.compile(Pattern.quote(file.getName()) + "\\.(\\d{8}-\\d{6})(?:-\\d{1,9})?(?:\\.gz)?");
+        File[] backups = file.getParentFile().listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return rolledName.matcher(name).matches();
+            }
+        });
+        if (backups == null || backups.length <= maxBackups)
+            return;
+        // oldest first: by start time, then by modification time, since the
+        // sequence numbers of deleted files are reused within the same second
+        Arrays.sort(backups, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                Matcher m1 = rolledName.matcher(f1.getName());
+                Matcher m2 = rolledName.matcher(f2.getName());
+                m1.matches();
+                m2.matches();
+                int c = m1.group(1).compareTo(m2.group(1));
+                if (c != 0)
+                    return c;
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (int i = 0; i < backups.length - maxBackups; i++) {
+            if (!backups[i].delete())
+                Util.report("Could not delete old log file [" + backups[i] + "]");
+        }
+    }
+}
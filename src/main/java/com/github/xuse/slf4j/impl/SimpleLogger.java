@@ -25,7 +25,10 @@
 package com.github.xuse.slf4j.impl;
 
 import java.io.PrintStream;
-import java.util.Date;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.event.LoggingEvent;
@@ -65,7 +68,13 @@ import org.slf4j.spi.LocationAwareLogger;
  * named "a.b.c" is initialized, its level is assigned from this property. If
  * unspecified, the level of nearest parent logger will be used, and if none is
  * set, then the value specified by
- * <code>org.slf4j.simpleLogger.defaultLogLevel</code> will be used.</li>
+ * <code>org.slf4j.simpleLogger.defaultLogLevel</code> will be used. Levels can
+ * be changed at runtime with {@link #setLogLevel(String, String)}.</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.reloadInterval</code> - If greater than 0
+ * and simplelogger.properties is a file, the file is checked every this many
+ * seconds and the <code>defaultLogLevel</code> and <code>log.*</code> levels
+ * are reloaded when it changes. Defaults to <code>0</code>.</li>
  *
  * <li><code>org.slf4j.simpleLogger.showDateTime</code> - Set to
  * <code>true</code> if you want the current date and time to be included in
@@ -95,6 +104,51 @@ import org.slf4j.spi.LocationAwareLogger;
  *
  * <li><code>org.slf4j.simpleLogger.warnLevelString</code> - The string value
  * output for the warn level. Defaults to <code>WARN</code>.</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.format</code> - "text" or "json". In JSON
+ * format every event is written as one JSON object per line with the fields
+ * ts, level, thread, logger, msg, mdc and exception; the showXxx and
+ * xxxLevelString settings do not apply. Defaults to "text".</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.maxFileSize</code> - When logging to a file,
+ * roll over to a new file before the current one exceeds this size, e.g.
+ * <code>100MB</code>. Rolled files are renamed to
+ * <code><em>logFile</em>.yyyyMMdd-HHmmss</code>. Not set by default.</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.rollingPeriod</code> - "hourly" or "daily"
+ * to also roll over at the start of every hour or day. Not set by default.</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.maxBackups</code> - Number of rolled files
+ * to keep, 0 keeps all. Defaults to <code>7</code>.</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.compressRolledFiles</code> - Set to
+ * <code>true</code> to gzip rolled files on a background thread. Defaults to
+ * <code>false</code>.</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.writeBufferSize</code> - Size of the write
+ * buffer of a rolling log file, which is flushed at most once a second and
+ * on shutdown. Defaults to <code>256KB</code>.</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.async</code> - Set to <code>true</code> to
+ * hand rendered lines to a background writer thread through a bounded ring
+ * buffer instead of writing them on the calling thread. Defaults to
+ * <code>false</code>.</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.asyncBufferSize</code> - Capacity of the
+ * ring buffer in log events, rounded up to a power of two. Defaults to
+ * <code>8192</code>.</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.asyncFullPolicy</code> - What to do when the
+ * ring buffer is full: "block" waits for room, "drop" discards the event (the
+ * number of dropped events is written to the output), "spill" queues it in an
+ * unbounded overflow queue. Defaults to "block".</li>
+ *
+ * <li><code>org.slf4j.simpleLogger.garbageFree</code> - Set to
+ * <code>true</code> to render lines into per-thread reusable buffers,
+ * substitute <code>{}</code> parameters in place and encode the line to UTF-8
+ * bytes without intermediate strings. In synchronous mode a log call then
+ * allocates nothing unless an argument needs <code>toString()</code>.
+ * Defaults to <code>false</code>.</li>
  * 
  * </ul>
  *
@@ -146,6 +200,8 @@ public class SimpleLogger extends MarkerIgnoringBase {
 
     private static long START_TIME = System.currentTimeMillis();
 
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
     protected static final int LOG_LEVEL_TRACE = LocationAwareLogger.TRACE_INT;
     protected static final int LOG_LEVEL_DEBUG = LocationAwareLogger.DEBUG_INT;
     protected static final int LOG_LEVEL_INFO = LocationAwareLogger.INFO_INT;
@@ -174,10 +230,12 @@ public class SimpleLogger extends MarkerIgnoringBase {
         CONFIG_PARAMS.init();
     }
 
-    /** The current log level */
-    protected int currentLogLevel = LOG_LEVEL_INFO;
+    /** The current log level, maintained by {@link LevelRegistry} */
+    protected volatile int currentLogLevel = LOG_LEVEL_INFO;
     /** The short name of this simple log instance */
-    private transient String shortLogName = null;
+    private final transient String shortLogName;
+    /** the logger name as a JSON field, for the JSON format */
+    private final transient String jsonLoggerField;
 
     /**
      * All system properties used by <code>SimpleLogger</code> start with this
@@ -210,31 +268,97 @@ public class SimpleLogger extends MarkerIgnoringBase {
 
     public static final String DEFAULT_LOG_LEVEL_KEY = SimpleLogger.SYSTEM_PREFIX + "defaultLogLevel";
 
+    public static final String RELOAD_INTERVAL_KEY = SimpleLogger.SYSTEM_PREFIX + "reloadInterval";
+
+    public static final String FORMAT_KEY = SimpleLogger.SYSTEM_PREFIX + "format";
+
+    public static final String MAX_FILE_SIZE_KEY = SimpleLogger.SYSTEM_PREFIX + "maxFileSize";
+
+    public static final String ROLLING_PERIOD_KEY = SimpleLogger.SYSTEM_PREFIX + "rollingPeriod";
+
+    public static final String MAX_BACKUPS_KEY = SimpleLogger.SYSTEM_PREFIX + "maxBackups";
+
+    public static final String COMPRESS_ROLLED_FILES_KEY = SimpleLogger.SYSTEM_PREFIX + "compressRolledFiles";
+
+    public static final String WRITE_BUFFER_SIZE_KEY = SimpleLogger.SYSTEM_PREFIX + "writeBufferSize";
+
+    public static final String GARBAGE_FREE_KEY = SimpleLogger.SYSTEM_PREFIX + "garbageFree";
+
+    public static final String ASYNC_KEY = SimpleLogger.SYSTEM_PREFIX + "async";
+
+    public static final String ASYNC_BUFFER_SIZE_KEY = SimpleLogger.SYSTEM_PREFIX + "asyncBufferSize";
+
+    public static final String ASYNC_FULL_POLICY_KEY = SimpleLogger.SYSTEM_PREFIX + "asyncFullPolicy";
+
     /**
-     * Package access allows only {@link SimpleLoggerFactory} to instantiate
-     * SimpleLogger instances.
+     * Number of log events discarded by the asynchronous writer because its
+     * buffer was full. Always 0 when asynchronous output is not enabled.
      */
-    SimpleLogger(String name) {
-        this.name = name;
+    public static long getDroppedEventCount() {
+        lazyInit();
+        AsyncLogWriter async = CONFIG_PARAMS.asyncWriter;
+        return async == null ? 0 : async.getDroppedCount();
+    }
 
-        String levelString = recursivelyComputeLevelString();
-        if (levelString != null) {
-            this.currentLogLevel = SimpleLoggerConfiguration.stringToLevel(levelString);
-        } else {
-            this.currentLogLevel = CONFIG_PARAMS.defaultLogLevel;
+    /**
+     * Change the level of a logger and all loggers below it at runtime.
+     *
+     * @param loggerName
+     *            logger name, or "ROOT" for the default level
+     * @param level
+     *            one of "trace", "debug", "info", "warn", "error" or "off"
+     * @return the number of existing loggers whose level changed
+     */
+    public static int setLogLevel(String loggerName, String level) {
+        int levelInt = SimpleLoggerConfiguration.stringToLevel(level);
+        if (!SimpleLoggerConfiguration.levelToString(levelInt).equalsIgnoreCase(level)) {
+            throw new IllegalArgumentException("Unknown log level: " + level);
         }
+        lazyInit();
+        return CONFIG_PARAMS.levels.setLevel(loggerName, levelInt);
     }
 
-    String recursivelyComputeLevelString() {
-        String tempName = name;
-        String levelString = null;
-        int indexOfLastDot = tempName.length();
-        while ((levelString == null) && (indexOfLastDot > -1)) {
-            tempName = tempName.substring(0, indexOfLastDot);
-            levelString = CONFIG_PARAMS.getStringProperty(SimpleLogger.LOG_KEY_PREFIX + tempName, null);
-            indexOfLastDot = String.valueOf(tempName).lastIndexOf(".");
+    /**
+     * Undo {@link #setLogLevel(String, String)}, so the logger gets its level
+     * from the configuration again.
+     *
+     * @return the number of existing loggers whose level changed
+     */
+    public static int resetLogLevel(String loggerName) {
+        lazyInit();
+        return CONFIG_PARAMS.levels.resetLevel(loggerName);
+    }
+
+    /**
+     * @return the level that applies to the given logger name
+     */
+    public static String getLogLevel(String loggerName) {
+        lazyInit();
+        return SimpleLoggerConfiguration.levelToString(CONFIG_PARAMS.levels.getEffectiveLevel(loggerName));
+    }
+
+    /**
+     * @return all explicitly configured levels by logger name, including
+     *         "ROOT" for the default level
+     */
+    public static Map<String, String> getLogLevels() {
+        lazyInit();
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, Integer> e : CONFIG_PARAMS.levels.getLevels().entrySet()) {
+            result.put(e.getKey(), SimpleLoggerConfiguration.levelToString(e.getValue()));
         }
-        return levelString;
+        return result;
+    }
+
+    /**
+     * Package access allows only {@link SimpleLoggerFactory} to instantiate
+     * SimpleLogger instances.
+     */
+    SimpleLogger(String name) {
+        this.name = name;
+        this.shortLogName = computeShortName();
+        this.jsonLoggerField = JsonLayout.loggerField(name);
+        CONFIG_PARAMS.levels.register(this);
     }
 
     /**
@@ -253,12 +377,42 @@ public class SimpleLogger extends MarkerIgnoringBase {
             return;
         }
 
+        if (CONFIG_PARAMS.garbageFree) {
+            StringBuilder buf = LineBuffer.acquire();
+            try {
+                int start = appendHeader(buf, level);
+                buf.append(message);
+                write(buf, start, t);
+            } finally {
+                LineBuffer.release(buf);
+            }
+            return;
+        }
+
         StringBuilder buf = new StringBuilder(32);
+        int start = appendHeader(buf, level);
+
+        // Append the message
+        buf.append(message);
+
+        write(buf, start, t);
 
+    }
+
+    /**
+     * Append date-time, thread name, level and logger name as configured.
+     *
+     * @return in JSON format, the start of the message, which is escaped by
+     *         {@link #write(StringBuilder, int, Throwable)}; otherwise -1
+     */
+    private int appendHeader(StringBuilder buf, int level) {
+        if (CONFIG_PARAMS.jsonFormat) {
+            return JsonLayout.appendStart(buf, System.currentTimeMillis(), levelName(level), jsonLoggerField);
+        }
         // Append date-time if so configured
         if (CONFIG_PARAMS.showDateTime) {
             if (CONFIG_PARAMS.dateFormatter != null) {
-                buf.append(getFormattedDate());
+                CONFIG_PARAMS.dateFormatter.format(System.currentTimeMillis(), buf);
                 buf.append(' ');
             } else {
                 buf.append(System.currentTimeMillis() - START_TIME);
@@ -285,18 +439,26 @@ public class SimpleLogger extends MarkerIgnoringBase {
 
         // Append the name of the log instance if so configured
         if (CONFIG_PARAMS.showShortLogName) {
-            if (shortLogName == null)
-                shortLogName = computeShortName();
-            buf.append(String.valueOf(shortLogName)).append(" - ");
+            buf.append(shortLogName).append(" - ");
         } else if (CONFIG_PARAMS.showLogName) {
             buf.append(String.valueOf(name)).append(" - ");
         }
+        return -1;
+    }
 
-        // Append the message
-        buf.append(message);
-
-        write(buf, t);
-
+    private static String levelName(int level) {
+        switch (level) {
+        case LOG_LEVEL_TRACE:
+            return "TRACE";
+        case LOG_LEVEL_DEBUG:
+            return "DEBUG";
+        case LOG_LEVEL_INFO:
+            return "INFO";
+        case LOG_LEVEL_WARN:
+            return "WARN";
+        default:
+            return "ERROR";
+        }
     }
 
     protected String renderLevel(int level) {
@@ -315,9 +477,33 @@ public class SimpleLogger extends MarkerIgnoringBase {
         throw new IllegalStateException("Unrecognized level [" + level + "]");
     }
 
+    private void write(StringBuilder buf, int messageStart, Throwable t) {
+        if (messageStart >= 0) {
+            // JSON: the exception goes into the same line
+            JsonLayout.appendEnd(buf, messageStart, t);
+            t = null;
+        }
+        write(buf, t);
+    }
+
     void write(StringBuilder buf, Throwable t) {
+        AsyncLogWriter async = CONFIG_PARAMS.asyncWriter;
+        if (async != null) {
+            if (t != null) {
+                appendThrowable(buf, t);
+            }
+            async.append(buf.toString());
+            return;
+        }
         PrintStream targetStream = CONFIG_PARAMS.outputChoice.getTargetPrintStream();
 
+        if (CONFIG_PARAMS.garbageFree) {
+            buf.append(LINE_SEPARATOR);
+            LineBuffer.write(buf, targetStream);
+            writeThrowable(t, targetStream);
+            targetStream.flush();
+            return;
+        }
         targetStream.println(buf.toString());
         writeThrowable(t, targetStream);
         targetStream.flush();
@@ -329,13 +515,14 @@ public class SimpleLogger extends MarkerIgnoringBase {
         }
     }
 
-    private String getFormattedDate() {
-        Date now = new Date();
-        String dateText;
-        synchronized (CONFIG_PARAMS.dateFormatter) {
-            dateText = CONFIG_PARAMS.dateFormatter.format(now);
-        }
-        return dateText;
+    private static void appendThrowable(StringBuilder buf, Throwable t) {
+        StringWriter sw = new StringWriter();
+        t.printStackTrace(new PrintWriter(sw));
+        StringBuffer trace = sw.getBuffer();
+        int len = trace.length();
+        while (len > 0 && (trace.charAt(len - 1) == '\n' || trace.charAt(len - 1) == '\r'))
+            len--;
+        buf.append(System.lineSeparator()).append(trace, 0, len);
     }
 
     private String computeShortName() {
@@ -354,6 +541,16 @@ public class SimpleLogger extends MarkerIgnoringBase {
         if (!isLevelEnabled(level)) {
             return;
         }
+        if (CONFIG_PARAMS.garbageFree) {
+            StringBuilder buf = LineBuffer.acquire();
+            try {
+                int start = appendHeader(buf, level);
+                write(buf, start, ParameterFormatter.format(buf, format, arg1, arg2));
+            } finally {
+                LineBuffer.release(buf);
+            }
+            return;
+        }
         FormattingTuple tp = MessageFormatter.format(format, arg1, arg2);
         log(level, tp.getMessage(), tp.getThrowable());
     }
@@ -370,6 +567,16 @@ public class SimpleLogger extends MarkerIgnoringBase {
         if (!isLevelEnabled(level)) {
             return;
         }
+        if (CONFIG_PARAMS.garbageFree) {
+            StringBuilder buf = LineBuffer.acquire();
+            try {
+                int start = appendHeader(buf, level);
+                write(buf, start, ParameterFormatter.format(buf, format, arguments));
+            } finally {
+                LineBuffer.release(buf);
+            }
+            return;
+        }
         FormattingTuple tp = MessageFormatter.arrayFormat(format, arguments);
         log(level, tp.getMessage(), tp.getThrowable());
     }
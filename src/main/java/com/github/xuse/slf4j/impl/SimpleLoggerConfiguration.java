@@ -1,14 +1,21 @@
 package com.github.xuse.slf4j.impl;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.security.AccessController;
+import java.net.URL;
 import java.security.PrivilegedAction;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.helpers.Util;
 import com.github.xuse.slf4j.impl.OutputChoice.OutputChoiceType;
@@ -40,7 +47,7 @@ public class SimpleLoggerConfiguration {
 	private static final String DATE_TIME_FORMAT_STR_DEFAULT = null;
 	private static String dateTimeFormatStr = DATE_TIME_FORMAT_STR_DEFAULT;
 
-	DateFormat dateFormatter = null;
+	CachedDateFormatter dateFormatter = null;
 
 	private static final boolean SHOW_THREAD_NAME_DEFAULT = true;
 	boolean showThreadName = SHOW_THREAD_NAME_DEFAULT;
@@ -61,6 +68,19 @@ public class SimpleLoggerConfiguration {
 	private static final boolean CACHE_OUTPUT_STREAM_DEFAULT = false;
 	private boolean cacheOutputStream = CACHE_OUTPUT_STREAM_DEFAULT;
 
+	private static final int MAX_BACKUPS_DEFAULT = 7;
+	private static final int WRITE_BUFFER_SIZE_DEFAULT = 256 * 1024;
+	RollingFileOutputStream rollingStream = null;
+
+	boolean jsonFormat = false;
+
+	private static final boolean GARBAGE_FREE_DEFAULT = false;
+	boolean garbageFree = GARBAGE_FREE_DEFAULT;
+
+	private static final boolean ASYNC_DEFAULT = false;
+	private static final int ASYNC_BUFFER_SIZE_DEFAULT = 8192;
+	AsyncLogWriter asyncWriter = null;
+
 	private static final String WARN_LEVELS_STRING_DEFAULT = "WARN";
 	String warnLevelString = WARN_LEVELS_STRING_DEFAULT;
 
@@ -68,14 +88,24 @@ public class SimpleLoggerConfiguration {
 	String errorLevelString = "ERROR";
 	String debugLevelString = "DEBUG";
 
+	LevelRegistry levels = null;
+	private ScheduledExecutorService watcher = null;
+	private long configLastModified;
+
 	private final Properties properties = new Properties();
 
 	void init() {
-		loadProperties();
+		URL configUrl = findConfigurationFile();
+		loadProperties(configUrl, properties);
 
 		String defaultLogLevelString = getStringProperty(SimpleLogger.DEFAULT_LOG_LEVEL_KEY, null);
 		if (defaultLogLevelString != null)
 			defaultLogLevel = stringToLevel(defaultLogLevelString);
+		levels = new LevelRegistry(defaultLogLevel, scanLogLevels());
+		int reloadInterval = getIntProperty(SimpleLogger.RELOAD_INTERVAL_KEY, 0);
+		if (reloadInterval > 0 && configUrl != null && "file".equals(configUrl.getProtocol())) {
+			watchConfigurationFile(configUrl, reloadInterval);
+		}
 
 		showLogName = getBooleanProperty(SimpleLogger.SHOW_LOG_NAME_KEY, SimpleLoggerConfiguration.SHOW_LOG_NAME_DEFAULT);
 		showShortLogName = getBooleanProperty(SimpleLogger.SHOW_SHORT_LOG_NAME_KEY, SHOW_SHORT_LOG_NAME_DEFAULT);
@@ -90,35 +120,81 @@ public class SimpleLoggerConfiguration {
 		logFile = getStringProperty(SimpleLogger.LOG_FILE_KEY, logFile);
 
 		cacheOutputStream = getBooleanProperty(SimpleLogger.CACHE_OUTPUT_STREAM_STRING_KEY, CACHE_OUTPUT_STREAM_DEFAULT);
-		outputChoice = computeOutputChoice(logFile, cacheOutputStream);
+		long maxFileSize = getSizeProperty(SimpleLogger.MAX_FILE_SIZE_KEY, 0);
+		RollingFileOutputStream.RollingPeriod period = RollingFileOutputStream.RollingPeriod.parse(getStringProperty(SimpleLogger.ROLLING_PERIOD_KEY));
+		if (!isConsole(logFile) && (maxFileSize > 0 || period != RollingFileOutputStream.RollingPeriod.NONE)) {
+			outputChoice = computeRollingOutputChoice(logFile, maxFileSize, period);
+		} else {
+			outputChoice = computeOutputChoice(logFile, cacheOutputStream);
+		}
+
+		jsonFormat = "json".equalsIgnoreCase(getStringProperty(SimpleLogger.FORMAT_KEY));
+		garbageFree = getBooleanProperty(SimpleLogger.GARBAGE_FREE_KEY, GARBAGE_FREE_DEFAULT);
+		if (getBooleanProperty(SimpleLogger.ASYNC_KEY, ASYNC_DEFAULT)) {
+			int bufferSize = getIntProperty(SimpleLogger.ASYNC_BUFFER_SIZE_KEY, ASYNC_BUFFER_SIZE_DEFAULT);
+			AsyncLogWriter.FullPolicy policy = AsyncLogWriter.FullPolicy.parse(getStringProperty(SimpleLogger.ASYNC_FULL_POLICY_KEY));
+			asyncWriter = new AsyncLogWriter(outputChoice, bufferSize, policy);
+		}
+		if (asyncWriter != null || rollingStream != null) {
+			Runtime.getRuntime().addShutdownHook(new Thread("simple-logger-shutdown") {
+				public void run() {
+					shutdown();
+				}
+			});
+		}
 
 		if (dateTimeFormatStr != null) {
 			try {
-				dateFormatter = new SimpleDateFormat(dateTimeFormatStr);
+				dateFormatter = new CachedDateFormatter(dateTimeFormatStr);
 			} catch (IllegalArgumentException e) {
 				Util.report("Bad date format in " + CONFIGURATION_FILE + "; will output relative time", e);
 			}
 		}
 	}
 
-	private void loadProperties() {
-		// Add props from the resource simplelogger.properties
-		InputStream in = AccessController.doPrivileged(new PrivilegedAction<InputStream>() {
-			public InputStream run() {
+	/**
+	 * Write out everything buffered by the asynchronous writer and the rolling
+	 * file output. Called when the JVM shuts down.
+	 */
+	void shutdown() {
+		if (watcher != null)
+			watcher.shutdown();
+		if (asyncWriter != null)
+			asyncWriter.shutdown();
+		if (rollingStream != null) {
+			try {
+				rollingStream.shutdown();
+			} catch (IOException e) {
+				// ignored
+			}
+		}
+	}
+
+	private URL findConfigurationFile() {
+		return AccessController.doPrivileged(new PrivilegedAction<URL>() {
+			public URL run() {
 				ClassLoader threadCL = Thread.currentThread().getContextClassLoader();
 				if (threadCL != null) {
-					return threadCL.getResourceAsStream(CONFIGURATION_FILE);
+					return threadCL.getResource(CONFIGURATION_FILE);
 				} else {
-					return ClassLoader.getSystemResourceAsStream(CONFIGURATION_FILE);
+					return ClassLoader.getSystemResource(CONFIGURATION_FILE);
 				}
 			}
 		});
-		if (null != in) {
-			try {
-				properties.load(in);
-			} catch (java.io.IOException e) {
-				// ignored
-			} finally {
+	}
+
+	private static void loadProperties(URL url, Properties properties) {
+		// Add props from the resource simplelogger.properties
+		if (url == null)
+			return;
+		InputStream in = null;
+		try {
+			in = url.openStream();
+			properties.load(in);
+		} catch (java.io.IOException e) {
+			// ignored
+		} finally {
+			if (in != null) {
 				try {
 					in.close();
 				} catch (java.io.IOException e) {
@@ -128,6 +204,77 @@ public class SimpleLoggerConfiguration {
 		}
 	}
 
+	/**
+	 * Collect all <code>org.slf4j.simpleLogger.log.*</code> levels in one pass,
+	 * system properties taking precedence over the configuration file.
+	 */
+	private Map<String, Integer> scanLogLevels() {
+		Map<String, Integer> result = new HashMap<String, Integer>();
+		collectLogLevels(properties, result);
+		try {
+			collectLogLevels(System.getProperties(), result);
+		} catch (SecurityException e) {
+			; // Ignore
+		}
+		return result;
+	}
+
+	private static void collectLogLevels(Properties props, Map<String, Integer> result) {
+		for (String key : props.stringPropertyNames()) {
+			if (key.startsWith(SimpleLogger.LOG_KEY_PREFIX)) {
+				result.put(key.substring(SimpleLogger.LOG_KEY_PREFIX.length()), stringToLevel(props.getProperty(key)));
+			}
+		}
+	}
+
+	/**
+	 * Check the configuration file periodically and reload the levels when it
+	 * changes. Other settings are only read at startup.
+	 */
+	private void watchConfigurationFile(URL configUrl, int intervalSeconds) {
+		final File file;
+		try {
+			file = new File(configUrl.toURI());
+		} catch (Exception e) {
+			Util.report("Can not watch " + configUrl, e);
+			return;
+		}
+		configLastModified = file.lastModified();
+		watcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "simple-logger-config-watcher");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		watcher.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				long lastModified = file.lastModified();
+				if (lastModified != configLastModified) {
+					configLastModified = lastModified;
+					reloadLevels(file);
+				}
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	private void reloadLevels(File file) {
+		Properties reloaded = new Properties();
+		try {
+			loadProperties(file.toURI().toURL(), reloaded);
+		} catch (java.io.IOException e) {
+			Util.report("Could not reload " + file, e);
+			return;
+		}
+		synchronized (properties) {
+			properties.clear();
+			properties.putAll(reloaded);
+		}
+		String defaultLogLevelString = getStringProperty(SimpleLogger.DEFAULT_LOG_LEVEL_KEY, null);
+		int level = defaultLogLevelString == null ? DEFAULT_LOG_LEVEL_DEFAULT : stringToLevel(defaultLogLevelString);
+		levels.reload(level, scanLogLevels());
+	}
+
 	String getStringProperty(String name, String defaultValue) {
 		String prop = getStringProperty(name);
 		return (prop == null) ? defaultValue : prop;
@@ -138,6 +285,46 @@ public class SimpleLoggerConfiguration {
 		return (prop == null) ? defaultValue : "true".equalsIgnoreCase(prop);
 	}
 
+	int getIntProperty(String name, int defaultValue) {
+		String prop = getStringProperty(name);
+		if (prop == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(prop.trim());
+		} catch (NumberFormatException e) {
+			Util.report("Bad integer value [" + prop + "] for " + name + "; using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Parse a size such as 1048576, 512KB, 10MB or 1GB.
+	 */
+	long getSizeProperty(String name, long defaultValue) {
+		String prop = getStringProperty(name);
+		if (prop == null || prop.trim().length() == 0)
+			return defaultValue;
+		String s = prop.trim().toUpperCase();
+		long unit = 1;
+		if (s.endsWith("B"))
+			s = s.substring(0, s.length() - 1);
+		if (s.endsWith("K")) {
+			unit = 1024L;
+		} else if (s.endsWith("M")) {
+			unit = 1024L * 1024;
+		} else if (s.endsWith("G")) {
+			unit = 1024L * 1024 * 1024;
+		}
+		if (unit > 1)
+			s = s.substring(0, s.length() - 1);
+		try {
+			return Long.parseLong(s.trim()) * unit;
+		} catch (NumberFormatException e) {
+			Util.report("Bad size value [" + prop + "] for " + name + "; using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
 	String getStringProperty(String name) {
 		String prop = null;
 		try {
@@ -148,6 +335,23 @@ public class SimpleLoggerConfiguration {
 		return (prop == null) ? properties.getProperty(name) : prop;
 	}
 
+	static String levelToString(int level) {
+		switch (level) {
+		case SimpleLogger.LOG_LEVEL_TRACE:
+			return "trace";
+		case SimpleLogger.LOG_LEVEL_DEBUG:
+			return "debug";
+		case SimpleLogger.LOG_LEVEL_INFO:
+			return "info";
+		case SimpleLogger.LOG_LEVEL_WARN:
+			return "warn";
+		case SimpleLogger.LOG_LEVEL_ERROR:
+			return "error";
+		default:
+			return "off";
+		}
+	}
+
 	static int stringToLevel(String levelStr) {
 		if ("trace".equalsIgnoreCase(levelStr)) {
 			return SimpleLogger.LOG_LEVEL_TRACE;
@@ -166,6 +370,23 @@ public class SimpleLoggerConfiguration {
 		return SimpleLogger.LOG_LEVEL_INFO;
 	}
 
+	private static boolean isConsole(String logFile) {
+		return "System.err".equalsIgnoreCase(logFile) || "System.out".equalsIgnoreCase(logFile);
+	}
+
+	private OutputChoice computeRollingOutputChoice(String logFile, long maxFileSize, RollingFileOutputStream.RollingPeriod period) {
+		int maxBackups = getIntProperty(SimpleLogger.MAX_BACKUPS_KEY, MAX_BACKUPS_DEFAULT);
+		boolean compress = getBooleanProperty(SimpleLogger.COMPRESS_ROLLED_FILES_KEY, false);
+		int bufferSize = (int) getSizeProperty(SimpleLogger.WRITE_BUFFER_SIZE_KEY, WRITE_BUFFER_SIZE_DEFAULT);
+		try {
+			rollingStream = new RollingFileOutputStream(new File(logFile), maxFileSize, period, maxBackups, compress, Math.max(bufferSize, 1024));
+			return new OutputChoice(new PrintStream(rollingStream));
+		} catch (IOException e) {
+			Util.report("Could not open [" + logFile + "]. Defaulting to System.err", e);
+			return new OutputChoice(OutputChoiceType.SYS_ERR);
+		}
+	}
+
 	private static OutputChoice computeOutputChoice(String logFile, boolean cacheOutputStream) {
 		if ("System.err".equalsIgnoreCase(logFile))
 			if (cacheOutputStream)
@@ -26,6 +26,7 @@ package com.github.xuse.slf4j.impl;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.ILoggerFactory;
@@ -47,18 +48,25 @@ public class SimpleLoggerFactory implements ILoggerFactory {
 
     /**
      * Return an appropriate {@link SimpleLogger} instance by name.
+     * <p>
+     * A cached logger is returned by a plain lock-free read. Only the first
+     * call for a name creates the logger, so exactly one instance per name is
+     * registered with the level registry.
      */
     public Logger getLogger(String name) {
         Logger simpleLogger = loggerMap.get(name);
         if (simpleLogger != null) {
             return simpleLogger;
-        } else {
-            Logger newInstance = new SimpleLogger(name);
-            Logger oldInstance = loggerMap.putIfAbsent(name, newInstance);
-            return oldInstance == null ? newInstance : oldInstance;
         }
+        return loggerMap.computeIfAbsent(name, NEW_LOGGER);
     }
 
+    private static final Function<String, Logger> NEW_LOGGER = new Function<String, Logger>() {
+        public Logger apply(String name) {
+            return new SimpleLogger(name);
+        }
+    };
+
     /**
      * Clear the internal logger cache.
      *
@@ -71,4 +79,54 @@ public class SimpleLoggerFactory implements ILoggerFactory {
     void reset() {
         loggerMap.clear();
     }
+
+    /**
+     * Measure getLogger() latency with 32 threads, for names that are cached
+     * and for names that are seen for the first time. Reported as wall time
+     * divided by the total number of calls.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final int THREADS = 32;
+        final int NAMES = 1000;
+        final int LOOPS = 1000000;
+        final SimpleLoggerFactory factory = new SimpleLoggerFactory();
+        final String[] names = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = "com.github.xuse.bench.Logger" + i;
+            // the cached loop below must only see names that already exist
+            factory.getLogger(names[i]);
+        }
+        for (int round = 0; round < 3; round++) {
+            final String prefix = "round" + round + ".";
+            long miss = runThreads(THREADS, new Runnable() {
+                public void run() {
+                    for (int i = 0; i < NAMES; i++) {
+                        factory.getLogger(prefix + names[i]);
+                    }
+                }
+            });
+            long hit = runThreads(THREADS, new Runnable() {
+                public void run() {
+                    for (int i = 0; i < LOOPS; i++) {
+                        factory.getLogger(names[i % NAMES]);
+                    }
+                }
+            });
+            System.out.println("first call:" + miss * 1000000L / ((long) THREADS * NAMES) + "ns/op, cached:"
+                    + hit * 1000000L / ((long) THREADS * LOOPS) + "ns/op");
+        }
+    }
+
+    private static long runThreads(int n, Runnable task) throws InterruptedException {
+        Thread[] threads = new Thread[n];
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            threads[i] = new Thread(task);
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return System.currentTimeMillis() - start;
+    }
 }
@@ -24,11 +24,12 @@
  */
 package org.slf4j.impl;
 
-import org.slf4j.helpers.NOPMDCAdapter;
+import org.slf4j.helpers.BasicMDCAdapter;
 import org.slf4j.spi.MDCAdapter;
 
 /**
- * This implementation is bound to {@link NOPMDCAdapter}.
+ * This implementation is bound to {@link BasicMDCAdapter}, whose values are
+ * written by SimpleLogger in JSON format.
  *
  * @author Ceki G&uuml;lc&uuml;
  */
@@ -57,10 +58,10 @@ public class StaticMDCBinder {
      * {@link StaticMDCBinder}.
      */
     public MDCAdapter getMDCA() {
-        return new NOPMDCAdapter();
+        return new BasicMDCAdapter();
     }
 
     public String getMDCAdapterClassStr() {
-        return NOPMDCAdapter.class.getName();
+        return BasicMDCAdapter.class.getName();
     }
 }